@@ -61,6 +61,17 @@ public class JK10
         values[2] = res.getZ();
         return values;
     }
+    /**
+     * Same as getXYZ(), without allocating the result nor logging it : for reading samples back to back.
+     */
+    static public void getXYZ(float[/* 3 */] out)
+    {
+        XYZ.ByValue res = IK10.INSTANCE.getXYZ();
+        out[0] = res.X;
+        out[1] = res.Y;
+        out[2] = res.Z;
+    }
+
     static public void release(){
         IK10.INSTANCE.releaseK10();
     }
@@ -20,6 +20,18 @@ public class ColorMeasure implements IIndexable {
     private ColorSet _samples;
     private String _label;
 
+    // running statistics, updated for each sample
+    private final double[] _mean = new double[3];
+    private final double[] _m2 = new double[3];
+    private final Point3f _value = new Point3f(0, 0, 0);
+    private final Point3f _stdDev = new Point3f(0, 0, 0);
+    private final Point3f _confidenceInterval = new Point3f(0, 0, 0);
+    private final Point3f _min = new Point3f(Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE);
+    private final Point3f _max = new Point3f(-Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE);
+
+    /** 95% confidence, normal approximation */
+    private static final float CONFIDENCE_FACTOR = 1.96f;
+
     public ColorMeasure(Color patchColor, String label) {
         _patchColor = patchColor;
         _samples = new ColorSet(EColorSpace.CIExyY);
@@ -46,29 +58,92 @@ public class ColorMeasure implements IIndexable {
    
     public void addSample(Point3f sample) {
         _samples.add(sample);
+        int count = _samples.size();
+        _value._a = accumulate(0, sample._a, count);
+        _value._b = accumulate(1, sample._b, count);
+        _value._c = accumulate(2, sample._c, count);
+        _stdDev._a = stdDev(0, count);
+        _stdDev._b = stdDev(1, count);
+        _stdDev._c = stdDev(2, count);
+        float factor = CONFIDENCE_FACTOR / (float) Math.sqrt(count);
+        _confidenceInterval._a = _stdDev._a * factor;
+        _confidenceInterval._b = _stdDev._b * factor;
+        _confidenceInterval._c = _stdDev._c * factor;
+        _min._a = Math.min(_min._a, sample._a);
+        _min._b = Math.min(_min._b, sample._b);
+        _min._c = Math.min(_min._c, sample._c);
+        _max._a = Math.max(_max._a, sample._a);
+        _max._b = Math.max(_max._b, sample._b);
+        _max._c = Math.max(_max._c, sample._c);
+    }
+
+    /**
+     * Welford update of one channel
+     * 
+     * @return the new mean
+     */
+    private float accumulate(int channel, float value, int count) {
+        double delta = value - _mean[channel];
+        _mean[channel] += delta / count;
+        _m2[channel] += delta * (value - _mean[channel]);
+        return (float) _mean[channel];
+    }
+
+    private float stdDev(int channel, int count) {
+        if (count < 2)
+            return 0;
+        return (float) Math.sqrt(_m2[channel] / (count - 1));
     }
 
+    /**
+     * Read-only view of the samples, creating a point per sample. Prefer {@link #getSampleSet()} in loops.
+     */
     public ListIterator<Point3f> getSamples() {
         return _samples.listIterator();
     }
 
     /**
-     * mean of samples
+     * The samples, to be read without allocation with the indexed accessors. Don't modify it.
+     */
+    public ColorSet getSampleSet() {
+        return _samples;
+    }
+
+    /**
+     * mean of samples. The returned point is shared and updated with each new sample : don't modify it.
      * 
      * @return
      */
     public Point3f getValue() {
-        Point3f mean = new Point3f(0,0,0);
-        for (Point3f pt : _samples) {
-            mean._a += pt._a;
-            mean._b += pt._b;
-            mean._c += pt._c;
-        }
-        int sampleCount = size();
-        mean._a /= sampleCount;
-        mean._b /= sampleCount;
-        mean._c /= sampleCount;
-        return mean;
+        return _value;
+    }
+
+    /**
+     * sample standard deviation of each channel (shared, don't modify).
+     */
+    public Point3f getStdDev() {
+        return _stdDev;
+    }
+
+    /**
+     * half width of the 95% confidence interval of the mean of each channel (shared, don't modify).
+     */
+    public Point3f getConfidenceInterval() {
+        return _confidenceInterval;
+    }
+
+    /**
+     * minimum of each channel (shared, don't modify).
+     */
+    public Point3f getMin() {
+        return _min;
+    }
+
+    /**
+     * maximum of each channel (shared, don't modify).
+     */
+    public Point3f getMax() {
+        return _max;
     }
 
     public Point3f get(int index) {
@@ -84,11 +159,10 @@ public class ColorMeasure implements IIndexable {
     };
 
     public String toString() {
-        Point3f value = getValue();
-        value._a = ((int)(value._a *1000))/1000f;
-        value._b = ((int)(value._b *1000))/1000f;
-        value._c = ((int)(value._c *1000))/1000f;
-        return "["+_patchColor.getRed() + " " + _patchColor.getGreen() + " " + _patchColor.getBlue() + "]\t" + value._a + "\t" + value._b + "\t" + value._c ;
+        float a = ((int)(_value._a *1000))/1000f;
+        float b = ((int)(_value._b *1000))/1000f;
+        float c = ((int)(_value._c *1000))/1000f;
+        return "["+_patchColor.getRed() + " " + _patchColor.getGreen() + " " + _patchColor.getBlue() + "]\t" + a + "\t" + b + "\t" + c ;
     }
 
    
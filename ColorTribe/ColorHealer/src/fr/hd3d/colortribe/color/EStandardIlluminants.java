@@ -202,31 +202,12 @@ public enum EStandardIlluminants implements IIlluminant
 
     public static final float getApproximateColorTemperature(Point2f blackBody)
     {
-        float lowerBound = 1000;
-        float upperBound = 10000;
-        float meanValue;
-        Point2f currentBlackBody;
-        float distance;
-        int count = 0;
-        do
-        {
-            meanValue = (lowerBound + upperBound) / 2;
-            currentBlackBody = getBlackBodyCoordinates(meanValue);
-            if (currentBlackBody._a > blackBody._a)
-            {
-                lowerBound = meanValue;
-            }
-            else
-            {
-                upperBound = meanValue;
-            }
-
-            distance = (float) Math.sqrt((currentBlackBody._a - blackBody._a) * (currentBlackBody._a - blackBody._a));
-            count++;
-        }
-        while (distance > 0.000001 && count < 20);
+        return getApproximateColorTemperature(blackBody._a, blackBody._b);
+    }
 
-        return ((int) (meanValue / 10)) * 10;
+    public static final float getApproximateColorTemperature(float x, float y)
+    {
+        return CorrelatedColorTemperature.getTemperature(x, y);
     }
 
     private final IIlluminant illuminant;
@@ -38,10 +38,12 @@ public class Formulas {
 	// 0.357579 0.715158 0.119193
 	// 0.180464 0.0721856 0.950444
 	public static Point3f convertRGB_D65toXYZ(Point3f p) {
-		Point3f tmp = new Point3f(p);
-		p._a = tmp._a * 0.412424f + tmp._b * 0.357579f + tmp._c * 0.180464f;
-		p._b = tmp._a * 0.212656f + tmp._b * 0.715158f + tmp._c * 0.0721856f;
-		p._c = tmp._a * 0.0193324f + tmp._b * 0.119193f + tmp._c * 0.950444f;
+		final float r = p._a;
+		final float g = p._b;
+		final float b = p._c;
+		p._a = r * 0.412424f + g * 0.357579f + b * 0.180464f;
+		p._b = r * 0.212656f + g * 0.715158f + b * 0.0721856f;
+		p._c = r * 0.0193324f + g * 0.119193f + b * 0.950444f;
 		return p;
 	}
 
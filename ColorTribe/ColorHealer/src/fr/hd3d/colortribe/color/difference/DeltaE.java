@@ -0,0 +1,210 @@
+package fr.hd3d.colortribe.color.difference;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+
+/**
+ * CIE76, CIE94 (graphic arts weights) and CIEDE2000 (kL = kC = kH = 1) color differences between Lab colors, the first
+ * one being the reference.
+ *
+ * Batch versions take one array per component, work on count entries from index 0 without allocating, and run one
+ * tight loop per formula. The parallel version splits large batches over the common fork-join pool. Computations are
+ * done in double, CIEDE2000 only needs one atan2 per color, one for the mean hue and one exp : the cosines of the
+ * hue terms come from the mean hue cosine and sine.
+ */
+public final class DeltaE {
+    // batches smaller than this aren't worth splitting
+    private static final int PARALLEL_THRESHOLD = 4096;
+
+    private static final double K1 = 0.045;
+    private static final double K2 = 0.015;
+
+    private static final double POW25_7 = 6103515625.0; // 25^7
+    private static final double TWO_PI = 2 * Math.PI;
+    private static final double COS_30 = Math.cos(Math.toRadians(30));
+    private static final double SIN_30 = Math.sin(Math.toRadians(30));
+    private static final double COS_6 = Math.cos(Math.toRadians(6));
+    private static final double SIN_6 = Math.sin(Math.toRadians(6));
+    private static final double COS_63 = Math.cos(Math.toRadians(63));
+    private static final double SIN_63 = Math.sin(Math.toRadians(63));
+
+    private DeltaE() {
+    }
+
+    public static float cie76(float L1, float a1, float b1, float L2, float a2, float b2) {
+        final double dL = L1 - L2;
+        final double da = a1 - a2;
+        final double db = b1 - b2;
+        return (float) Math.sqrt(dL * dL + da * da + db * db);
+    }
+
+    public static float cie94(float L1, float a1, float b1, float L2, float a2, float b2) {
+        final double C1 = Math.sqrt((double) a1 * a1 + (double) b1 * b1);
+        final double C2 = Math.sqrt((double) a2 * a2 + (double) b2 * b2);
+        final double dL = L1 - L2;
+        final double dC = C1 - C2;
+        final double da = a1 - a2;
+        final double db = b1 - b2;
+        final double dH2 = Math.max(0, da * da + db * db - dC * dC);
+        final double sC = 1 + K1 * C1;
+        final double sH = 1 + K2 * C1;
+        return (float) Math.sqrt(dL * dL + dC * dC / (sC * sC) + dH2 / (sH * sH));
+    }
+
+    public static float ciede2000(float L1, float a1, float b1, float L2, float a2, float b2) {
+        // a* rescaled for neutral colors
+        final double meanC = (Math.sqrt((double) a1 * a1 + (double) b1 * b1) + Math.sqrt((double) a2 * a2
+                + (double) b2 * b2)) / 2;
+        final double meanC7 = pow7(meanC);
+        final double g = 1.5 - 0.5 * Math.sqrt(meanC7 / (meanC7 + POW25_7));
+        final double ap1 = g * a1;
+        final double ap2 = g * a2;
+        final double C1 = Math.sqrt(ap1 * ap1 + (double) b1 * b1);
+        final double C2 = Math.sqrt(ap2 * ap2 + (double) b2 * b2);
+        final double h1 = hue(b1, ap1);
+        final double h2 = hue(b2, ap2);
+
+        final double dL = L2 - L1;
+        final double dC = C2 - C1;
+        final double product = C1 * C2;
+        double dh = 0;
+        double meanH = h1 + h2;
+        if (product != 0) {
+            dh = h2 - h1;
+            if (dh > Math.PI)
+                dh -= TWO_PI;
+            else if (dh < -Math.PI)
+                dh += TWO_PI;
+            if (Math.abs(h1 - h2) <= Math.PI)
+                meanH /= 2;
+            else if (meanH < TWO_PI)
+                meanH = (meanH + TWO_PI) / 2;
+            else
+                meanH = (meanH - TWO_PI) / 2;
+        }
+        final double dH = 2 * Math.sqrt(product) * Math.sin(dh / 2);
+
+        final double meanL = (L1 + L2) / 2.0;
+        final double meanCp = (C1 + C2) / 2;
+
+        // cos(k.h) and sin(k.h) from cos(h) and sin(h)
+        final double c1 = Math.cos(meanH);
+        final double s1 = Math.sin(meanH);
+        final double c2 = c1 * c1 - s1 * s1;
+        final double s2 = 2 * s1 * c1;
+        final double c3 = c2 * c1 - s2 * s1;
+        final double s3 = s2 * c1 + c2 * s1;
+        final double c4 = c2 * c2 - s2 * s2;
+        final double s4 = 2 * s2 * c2;
+        final double t = 1 - 0.17 * (c1 * COS_30 + s1 * SIN_30) + 0.24 * c2 + 0.32 * (c3 * COS_6 - s3 * SIN_6) - 0.20
+                * (c4 * COS_63 + s4 * SIN_63);
+
+        final double hueDegrees = Math.toDegrees(meanH) - 275;
+        final double rotation = Math.toRadians(60) * Math.exp(-hueDegrees * hueDegrees / 625);
+        final double meanCp7 = pow7(meanCp);
+        final double rT = -2 * Math.sqrt(meanCp7 / (meanCp7 + POW25_7)) * Math.sin(rotation);
+
+        final double l50 = (meanL - 50) * (meanL - 50);
+        final double sL = 1 + 0.015 * l50 / Math.sqrt(20 + l50);
+        final double sC = 1 + 0.045 * meanCp;
+        final double sH = 1 + 0.015 * meanCp * t;
+
+        final double termL = dL / sL;
+        final double termC = dC / sC;
+        final double termH = dH / sH;
+        return (float) Math.sqrt(termL * termL + termC * termC + termH * termH + rT * termC * termH);
+    }
+
+    private static double pow7(double value) {
+        final double square = value * value;
+        return square * square * square * value;
+    }
+
+    private static double hue(double b, double a) {
+        if (a == 0 && b == 0)
+            return 0;
+        final double h = Math.atan2(b, a);
+        return h < 0 ? h + TWO_PI : h;
+    }
+
+    /**
+     * Differences of the samples Lab 2 from the references Lab 1, written in out.
+     */
+    public static void compute(EDeltaEFormula formula, float[] L1, float[] a1, float[] b1, float[] L2, float[] a2,
+            float[] b2, float[] out, int count) {
+        checkLength(count, L1, a1, b1, L2, a2, b2, out);
+        compute(formula, L1, a1, b1, L2, a2, b2, out, 0, count);
+    }
+
+    /**
+     * Same as {@link #compute(EDeltaEFormula, float[], float[], float[], float[], float[], float[], float[], int)},
+     * split over the common fork-join pool for large batches.
+     */
+    public static void computeParallel(EDeltaEFormula formula, float[] L1, float[] a1, float[] b1, float[] L2,
+            float[] a2, float[] b2, float[] out, int count) {
+        checkLength(count, L1, a1, b1, L2, a2, b2, out);
+        if (count < 2 * PARALLEL_THRESHOLD)
+            compute(formula, L1, a1, b1, L2, a2, b2, out, 0, count);
+        else
+            ForkJoinPool.commonPool().invoke(new Batch(formula, L1, a1, b1, L2, a2, b2, out, 0, count));
+    }
+
+    private static void compute(EDeltaEFormula formula, float[] L1, float[] a1, float[] b1, float[] L2, float[] a2,
+            float[] b2, float[] out, int from, int to) {
+        switch (formula) {
+        case CIE76:
+            for (int i = from; i < to; i++)
+                out[i] = cie76(L1[i], a1[i], b1[i], L2[i], a2[i], b2[i]);
+            break;
+        case CIE94:
+            for (int i = from; i < to; i++)
+                out[i] = cie94(L1[i], a1[i], b1[i], L2[i], a2[i], b2[i]);
+            break;
+        default:
+            for (int i = from; i < to; i++)
+                out[i] = ciede2000(L1[i], a1[i], b1[i], L2[i], a2[i], b2[i]);
+        }
+    }
+
+    private static class Batch extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final EDeltaEFormula formula;
+        private final float[] L1, a1, b1, L2, a2, b2, out;
+        private final int from;
+        private final int to;
+
+        private Batch(EDeltaEFormula formula, float[] L1, float[] a1, float[] b1, float[] L2, float[] a2, float[] b2,
+                float[] out, int from, int to) {
+            this.formula = formula;
+            this.L1 = L1;
+            this.a1 = a1;
+            this.b1 = b1;
+            this.L2 = L2;
+            this.a2 = a2;
+            this.b2 = b2;
+            this.out = out;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= PARALLEL_THRESHOLD) {
+                DeltaE.compute(formula, L1, a1, b1, L2, a2, b2, out, from, to);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new Batch(formula, L1, a1, b1, L2, a2, b2, out, from, middle), new Batch(formula, L1, a1, b1,
+                    L2, a2, b2, out, middle, to));
+        }
+    }
+
+    private static void checkLength(int count, float[]... buffers) {
+        if (count < 0)
+            throw new IllegalArgumentException("Negative count : " + count);
+        for (float[] buffer : buffers)
+            if (buffer.length < count)
+                throw new IllegalArgumentException("Buffer of " + buffer.length + " values, " + count + " expected.");
+    }
+}
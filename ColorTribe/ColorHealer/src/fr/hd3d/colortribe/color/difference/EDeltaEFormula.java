@@ -0,0 +1,22 @@
+package fr.hd3d.colortribe.color.difference;
+
+/**
+ * Color difference formulas of {@link DeltaE}.
+ */
+public enum EDeltaEFormula {
+    CIE76, CIE94, CIEDE2000;
+
+    /**
+     * Difference of the sample Lab 2 from the reference Lab 1.
+     */
+    public float compute(float L1, float a1, float b1, float L2, float a2, float b2) {
+        switch (this) {
+        case CIE76:
+            return DeltaE.cie76(L1, a1, b1, L2, a2, b2);
+        case CIE94:
+            return DeltaE.cie94(L1, a1, b1, L2, a2, b2);
+        default:
+            return DeltaE.ciede2000(L1, a1, b1, L2, a2, b2);
+        }
+    }
+}
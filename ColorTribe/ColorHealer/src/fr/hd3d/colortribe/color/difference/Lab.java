@@ -0,0 +1,85 @@
+package fr.hd3d.colortribe.color.difference;
+
+/**
+ * CIE 1976 L*a*b* conversions, relative to a reference white given by its XYZ or its xy and luminance.
+ *
+ * Scalar versions write L, a, b in out[0..2]. Batch versions work on one array per component, count entries from index
+ * 0, without allocating. Output arrays may be the input ones.
+ */
+public final class Lab {
+    public static final int L = 0;
+    public static final int A = 1;
+    public static final int B = 2;
+
+    // CIE exact constants, 216 / 24389 and 24389 / 27
+    private static final float EPSILON = 0.008856452f;
+    private static final float KAPPA = 903.2963f;
+
+    private Lab() {
+    }
+
+    private static float f(float t) {
+        return t > EPSILON ? (float) Math.cbrt(t) : (KAPPA * t + 16) / 116;
+    }
+
+    public static void fromXYZ(float X, float Y, float Z, float whiteX, float whiteY, float whiteZ, float[] out) {
+        final float fx = f(X / whiteX);
+        final float fy = f(Y / whiteY);
+        final float fz = f(Z / whiteZ);
+        out[L] = 116 * fy - 16;
+        out[A] = 500 * (fx - fy);
+        out[B] = 200 * (fy - fz);
+    }
+
+    /**
+     * @param whiteLum
+     *            luminance of the reference white, in the unit of Y
+     */
+    public static void fromxyY(float x, float y, float Y, float whitex, float whitey, float whiteLum, float[] out) {
+        // y = 0 is black
+        final float ratio = y > 0 ? Y / y : 0;
+        fromXYZ(x * ratio, Y, (1 - x - y) * ratio, whitex * whiteLum / whitey, whiteLum, (1 - whitex - whitey)
+                * whiteLum / whitey, out);
+    }
+
+    public static void fromXYZ(float[] X, float[] Y, float[] Z, float whiteX, float whiteY, float whiteZ,
+            float[] outL, float[] outA, float[] outB, int count) {
+        checkLength(count, X, Y, Z, outL, outA, outB);
+        final float inverseX = 1 / whiteX;
+        final float inverseY = 1 / whiteY;
+        final float inverseZ = 1 / whiteZ;
+        for (int i = 0; i < count; i++) {
+            final float fx = f(X[i] * inverseX);
+            final float fy = f(Y[i] * inverseY);
+            final float fz = f(Z[i] * inverseZ);
+            outL[i] = 116 * fy - 16;
+            outA[i] = 500 * (fx - fy);
+            outB[i] = 200 * (fy - fz);
+        }
+    }
+
+    public static void fromxyY(float[] x, float[] y, float[] Y, float whitex, float whitey, float whiteLum,
+            float[] outL, float[] outA, float[] outB, int count) {
+        checkLength(count, x, y, Y, outL, outA, outB);
+        final float inverseX = whitey / (whitex * whiteLum);
+        final float inverseY = 1 / whiteLum;
+        final float inverseZ = whitey / ((1 - whitex - whitey) * whiteLum);
+        for (int i = 0; i < count; i++) {
+            final float ratio = y[i] > 0 ? Y[i] / y[i] : 0;
+            final float fx = f(x[i] * ratio * inverseX);
+            final float fy = f(Y[i] * inverseY);
+            final float fz = f((1 - x[i] - y[i]) * ratio * inverseZ);
+            outL[i] = 116 * fy - 16;
+            outA[i] = 500 * (fx - fy);
+            outB[i] = 200 * (fy - fz);
+        }
+    }
+
+    private static void checkLength(int count, float[]... buffers) {
+        if (count < 0)
+            throw new IllegalArgumentException("Negative count : " + count);
+        for (float[] buffer : buffers)
+            if (buffer.length < count)
+                throw new IllegalArgumentException("Buffer of " + buffer.length + " values, " + count + " expected.");
+    }
+}
@@ -1,34 +1,168 @@
 package fr.hd3d.colortribe.color.recycle;
 
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.ListIterator;
+import java.util.NoSuchElementException;
 
 import fr.hd3d.colortribe.color.EColorSpace;
 import fr.hd3d.colortribe.color.type.Point3f;
 
 /**
- * A ColorSet is a Collection of Point3D in a particular color space.
+ * A ColorSet is a collection of timestamped samples in a particular color space.
+ * 
+ * Samples are stored as structure of arrays (one growable float array per channel and one for the timestamps) :
+ * iterate with the indexed accessors to avoid any allocation, {@link #listIterator()} is a read-only view creating
+ * Point3f on the fly for existing callers.
  * 
  * @author Guillaume CHATELET
  */
-public class ColorSet extends ArrayList<Point3f> 
+public class ColorSet
 		{
-	private static final long serialVersionUID = 3216833815824350405L;
+	private static final int INITIAL_CAPACITY = 8;
+
 	private EColorSpace colorSpace = EColorSpace.UNDEFINED;
+	private float[] a = new float[INITIAL_CAPACITY];
+	private float[] b = new float[INITIAL_CAPACITY];
+	private float[] c = new float[INITIAL_CAPACITY];
+	private long[] timestamp = new long[INITIAL_CAPACITY];
+	private int size = 0;
 
 	public ColorSet(EColorSpace colorSpace) {
 		this.colorSpace = colorSpace;
 	}
 
 	private ColorSet(final ColorSet other) {
-		this.addAll(other);
 		colorSpace = other.colorSpace;
+		a = Arrays.copyOf(other.a, other.a.length);
+		b = Arrays.copyOf(other.b, other.b.length);
+		c = Arrays.copyOf(other.c, other.c.length);
+		timestamp = Arrays.copyOf(other.timestamp, other.timestamp.length);
+		size = other.size;
 	}
 
 	public EColorSpace getColorSpace() {
 		return colorSpace;
 	}
 
-	
+	/**
+	 * Add a sample stamped with the current time.
+	 */
+	public void add(Point3f sample) {
+		add(sample._a, sample._b, sample._c, System.nanoTime());
+	}
+
+	/**
+	 * @param nanoTime
+	 *            timestamp of the sample, from {@link System#nanoTime()}
+	 */
+	public void add(float sampleA, float sampleB, float sampleC, long nanoTime) {
+		if (size == a.length) {
+			int capacity = size * 2;
+			a = Arrays.copyOf(a, capacity);
+			b = Arrays.copyOf(b, capacity);
+			c = Arrays.copyOf(c, capacity);
+			timestamp = Arrays.copyOf(timestamp, capacity);
+		}
+		a[size] = sampleA;
+		b[size] = sampleB;
+		c[size] = sampleC;
+		timestamp[size] = nanoTime;
+		size++;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public void clear() {
+		size = 0;
+	}
+
+	public float getA(int index) {
+		checkIndex(index);
+		return a[index];
+	}
+
+	public float getB(int index) {
+		checkIndex(index);
+		return b[index];
+	}
+
+	public float getC(int index) {
+		checkIndex(index);
+		return c[index];
+	}
+
+	public long getTimestamp(int index) {
+		checkIndex(index);
+		return timestamp[index];
+	}
+
+	/**
+	 * @return a new point holding the sample
+	 */
+	public Point3f get(int index) {
+		checkIndex(index);
+		return new Point3f(a[index], b[index], c[index]);
+	}
+
+	private void checkIndex(int index) {
+		if (index < 0 || index >= size)
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+	}
+
+	/**
+	 * Read-only view of the samples, each call to next or previous creates a new point.
+	 */
+	public ListIterator<Point3f> listIterator() {
+		return new ListIterator<Point3f>() {
+			private int cursor = 0;
+
+			public boolean hasNext() {
+				return cursor < size;
+			}
+
+			public Point3f next() {
+				if (cursor >= size)
+					throw new NoSuchElementException();
+				return get(cursor++);
+			}
+
+			public boolean hasPrevious() {
+				return cursor > 0;
+			}
+
+			public Point3f previous() {
+				if (cursor <= 0)
+					throw new NoSuchElementException();
+				return get(--cursor);
+			}
+
+			public int nextIndex() {
+				return cursor;
+			}
+
+			public int previousIndex() {
+				return cursor - 1;
+			}
+
+			public void remove() {
+				throw new UnsupportedOperationException("ColorSet views are read-only");
+			}
+
+			public void set(Point3f e) {
+				throw new UnsupportedOperationException("ColorSet views are read-only");
+			}
+
+			public void add(Point3f e) {
+				throw new UnsupportedOperationException("ColorSet views are read-only");
+			}
+		};
+	}
 
 	@Override
 	public String toString() {
@@ -41,20 +175,30 @@ public class ColorSet extends ArrayList<Point3f>
 		return new ColorSet(this);
 	}
 
-	// @Override
-	// public int hashCode() {
-	// int aSeed = HashCodeUtils.SEED;
-	// HashCodeUtils.hash(aSeed, colorSpace);
-	// HashCodeUtils.hash(aSeed, super.hashCode());
-	// return aSeed;
-	// }
+	@Override
+	public int hashCode() {
+		int hash = colorSpace.hashCode();
+		for (int i = 0; i < size; i++) {
+			hash = 31 * hash + Float.floatToIntBits(a[i]);
+			hash = 31 * hash + Float.floatToIntBits(b[i]);
+			hash = 31 * hash + Float.floatToIntBits(c[i]);
+		}
+		return hash;
+	}
 
 	@Override
 	public boolean equals(Object o) {
 		if (o == null || o instanceof ColorSet == false)
 			return false;
 		final ColorSet other = (ColorSet) o;
-		return colorSpace.equals(other.getColorSpace()) && super.equals(other);
+		if (!colorSpace.equals(other.getColorSpace()) || size != other.size)
+			return false;
+		for (int i = 0; i < size; i++) {
+			if (Float.compare(a[i], other.a[i]) != 0 || Float.compare(b[i], other.b[i]) != 0
+					|| Float.compare(c[i], other.c[i]) != 0)
+				return false;
+		}
+		return true;
 	}
 
 }
@@ -0,0 +1,108 @@
+package fr.hd3d.colortribe.color.util;
+
+import fr.hd3d.colortribe.color.type.Matrix3;
+
+/**
+ * Batch versions of the Formulas and ColorMath conversions, working on structure of arrays buffers : one array per
+ * component, count entries converted from index 0. Nothing is allocated, output arrays may be the input ones.
+ * 
+ * The loops are plain counted loops without calls so that the JIT can unroll and vectorize them.
+ */
+public final class ColorKernels {
+
+    private ColorKernels() {
+    }
+
+    public static void xyYToXYZ(float[] x, float[] y, float[] Y, float[] outX, float[] outY, float[] outZ, int count) {
+        checkLength(count, x, y, Y, outX, outY, outZ);
+        for (int i = 0; i < count; i++) {
+            final float ratio = Y[i] / y[i];
+            final float xi = x[i];
+            final float yi = y[i];
+            outX[i] = xi * ratio;
+            outY[i] = Y[i];
+            outZ[i] = (1 - xi - yi) * ratio;
+        }
+    }
+
+    public static void XYZToxyY(float[] X, float[] Y, float[] Z, float[] outx, float[] outy, float[] outY, int count) {
+        checkLength(count, X, Y, Z, outx, outy, outY);
+        for (int i = 0; i < count; i++) {
+            final float Xi = X[i];
+            final float Yi = Y[i];
+            final float inverseSum = 1 / (Xi + Yi + Z[i]);
+            outx[i] = Xi * inverseSum;
+            outy[i] = Yi * inverseSum;
+            outY[i] = Yi;
+        }
+    }
+
+    /**
+     * Same matrix as Formulas.convertRGB_D65toXYZ.
+     */
+    public static void rgbD65ToXYZ(float[] r, float[] g, float[] b, float[] outX, float[] outY, float[] outZ, int count) {
+        checkLength(count, r, g, b, outX, outY, outZ);
+        for (int i = 0; i < count; i++) {
+            final float ri = r[i];
+            final float gi = g[i];
+            final float bi = b[i];
+            outX[i] = ri * 0.412424f + gi * 0.357579f + bi * 0.180464f;
+            outY[i] = ri * 0.212656f + gi * 0.715158f + bi * 0.0721856f;
+            outZ[i] = ri * 0.0193324f + gi * 0.119193f + bi * 0.950444f;
+        }
+    }
+
+    /**
+     * Same as Matrix3.transform, e.g. XYZ to RGB with a ColorMatrix set up by setup_CIEXYZtoRGB.
+     */
+    public static void transform(Matrix3 matrix, float[] a, float[] b, float[] c, float[] outA, float[] outB,
+            float[] outC, int count) {
+        checkLength(count, a, b, c, outA, outB, outC);
+        final float m00 = matrix.matrix00, m10 = matrix.matrix10, m20 = matrix.matrix20;
+        final float m01 = matrix.matrix01, m11 = matrix.matrix11, m21 = matrix.matrix21;
+        final float m02 = matrix.matrix02, m12 = matrix.matrix12, m22 = matrix.matrix22;
+        for (int i = 0; i < count; i++) {
+            final float ai = a[i];
+            final float bi = b[i];
+            final float ci = c[i];
+            outA[i] = ai * m00 + bi * m10 + ci * m20;
+            outB[i] = ai * m01 + bi * m11 + ci * m21;
+            outC[i] = ai * m02 + bi * m12 + ci * m22;
+        }
+    }
+
+    /**
+     * Same as ColorMath.xyToupvp.
+     */
+    public static void xyToupvp(float[] x, float[] y, float[] outUp, float[] outVp, int count) {
+        checkLength(count, x, y, outUp, outVp);
+        for (int i = 0; i < count; i++) {
+            final float xi = x[i];
+            final float yi = y[i];
+            final float inverseDenominator = 1 / (-2 * xi + 12 * yi + 3);
+            outUp[i] = 4 * xi * inverseDenominator;
+            outVp[i] = 9 * yi * inverseDenominator;
+        }
+    }
+
+    private static void checkLength(int count, float[] a, float[] b, float[] c, float[] outA, float[] outB,
+            float[] outC) {
+        checkLength(count, a, b, outA, outB);
+        checkLength(count, c);
+        checkLength(count, outC);
+    }
+
+    private static void checkLength(int count, float[] a, float[] b, float[] outA, float[] outB) {
+        checkLength(count, a);
+        checkLength(count, b);
+        checkLength(count, outA);
+        checkLength(count, outB);
+    }
+
+    private static void checkLength(int count, float[] buffer) {
+        if (count < 0)
+            throw new IllegalArgumentException("Negative count : " + count);
+        if (buffer.length < count)
+            throw new IllegalArgumentException("Buffer of " + buffer.length + " values, " + count + " expected.");
+    }
+}
@@ -1,41 +1,172 @@
 package fr.hd3d.colortribe.color.util;
 
+import java.util.Arrays;
 import java.util.Map.Entry;
-import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
 
 
+/**
+ * A curve defined by knots. Knots are put first, then the curve is frozen into sorted float arrays : lookups are a
+ * binary search, or a direct index in an optional uniform lookup table. Below the first knot, the first segment is
+ * extended linearly.
+ *
+ * Lookups need a frozen curve. Once frozen, and its lookup table built if any, the curve can be read from several
+ * threads.
+ */
 public class InterpolatedCurve {
-    private final SortedMap<Float, Float> points = new TreeMap<Float, Float>();
+    public enum EInterpolation {
+        LINEAR,
+        /** Fritsch-Carlson monotone cubic : no overshoot between knots, monotone data gives a monotone curve */
+        MONOTONE_CUBIC
+    }
+
+    private SortedMap<Float, Float> points = new TreeMap<Float, Float>();
+    private EInterpolation interpolation = EInterpolation.LINEAR;
+
+    // frozen knots, xs is written last so that reading it non null publishes the others
+    private volatile float[] xs = null;
+    private float[] ys = null;
+    private float[] tangents = null;
+
+    // optional uniform lookup table, lut is written after lutScale
+    private volatile float[] lut = null;
+    private float lutScale;
 
     public InterpolatedCurve() {
     }
 
+    public InterpolatedCurve(EInterpolation interpolation) {
+        this.interpolation = interpolation;
+    }
 
-    public void put(float x, float y) {
+    public synchronized void put(float x, float y) {
+        if (isFrozen())
+            throw new IllegalStateException("The curve is frozen.");
         points.put(x, y);
     }
 
-    public float getValue(float x) {
+    public boolean isFrozen() {
+        return xs != null;
+    }
+
+    /**
+     * Build the knot arrays, no knot can be added afterwards.
+     */
+    public synchronized void freeze() {
+        if (isFrozen())
+            return;
         if (points.size() < 2)
             throw new IllegalArgumentException();
-        final Float exactValue = points.get(x);
-        if (exactValue != null)
-            return exactValue;
-        final Set<Entry<Float, Float>> entrySet = points.entrySet();
-        Entry<Float, Float> previousEntry = null;
-        for (Entry<Float, Float> entry : entrySet) {
-            if (previousEntry != null && entry.getKey() > x) {
-                final float alpha = (x - previousEntry.getKey()) / (entry.getKey() - previousEntry.getKey());
-                return alpha * entry.getValue() + (1 - alpha) * previousEntry.getValue();
-            }
-            previousEntry = entry;
+        final float[] x = new float[points.size()];
+        final float[] y = new float[points.size()];
+        int i = 0;
+        for (Entry<Float, Float> entry : points.entrySet()) {
+            x[i] = entry.getKey();
+            y[i] = entry.getValue();
+            i++;
         }
-        throw new IllegalArgumentException();
+        if (interpolation == EInterpolation.MONOTONE_CUBIC)
+            tangents = computeMonotoneTangents(x, y);
+        ys = y;
+        xs = x;
+        points = null;
     }
 
-    
- 
- 
+    /**
+     * Precompute size values evenly spread over the knots range. Lookups then interpolate linearly in the table.
+     */
+    public synchronized void buildLookupTable(int size) {
+        if (size < 2)
+            throw new IllegalArgumentException("Lookup table needs at least 2 entries.");
+        freeze();
+        final float first = xs[0];
+        final float step = (xs[xs.length - 1] - first) / (size - 1);
+        final float[] table = new float[size];
+        for (int i = 0; i < size; i++)
+            table[i] = interpolate(xs, i == size - 1 ? xs[xs.length - 1] : first + i * step);
+        lutScale = 1 / step;
+        lut = table;
+    }
+
+    /**
+     * @throws IllegalArgumentException
+     *             if x is NaN or after the last knot
+     */
+    public float getValue(float x) {
+        final float[] xs = this.xs;
+        if (xs == null)
+            throw new IllegalStateException("The curve must be frozen before lookups.");
+        if (Float.isNaN(x) || x > xs[xs.length - 1])
+            throw new IllegalArgumentException("No value at " + x);
+        // also catches -0, which binarySearch sorts before 0
+        if (x <= xs[0]) {
+            if (x == xs[0])
+                return ys[0];
+            final float alpha = (x - xs[0]) / (xs[1] - xs[0]);
+            return alpha * ys[1] + (1 - alpha) * ys[0];
+        }
+        final float[] lut = this.lut;
+        if (lut != null) {
+            final float t = (x - xs[0]) * lutScale;
+            final int i = Math.min((int) t, lut.length - 2);
+            final float alpha = t - i;
+            return lut[i] + alpha * (lut[i + 1] - lut[i]);
+        }
+        return interpolate(xs, x);
+    }
+
+    /**
+     * Value at x, between the first and the last knot.
+     */
+    private float interpolate(float[] xs, float x) {
+        if (x <= xs[0])
+            return ys[0];
+        int i = Arrays.binarySearch(xs, x);
+        if (i >= 0)
+            return ys[i];
+        // x is between the knots i and i + 1
+        i = -i - 2;
+        final float h = xs[i + 1] - xs[i];
+        final float alpha = (x - xs[i]) / h;
+        if (tangents == null)
+            return alpha * ys[i + 1] + (1 - alpha) * ys[i];
+        // cubic Hermite
+        final float alpha2 = alpha * alpha;
+        final float alpha3 = alpha2 * alpha;
+        return (2 * alpha3 - 3 * alpha2 + 1) * ys[i] + (alpha3 - 2 * alpha2 + alpha) * h * tangents[i]
+                + (-2 * alpha3 + 3 * alpha2) * ys[i + 1] + (alpha3 - alpha2) * h * tangents[i + 1];
+    }
+
+    private static float[] computeMonotoneTangents(float[] x, float[] y) {
+        final int n = x.length;
+        final float[] secants = new float[n - 1];
+        for (int k = 0; k < n - 1; k++)
+            secants[k] = (y[k + 1] - y[k]) / (x[k + 1] - x[k]);
+        final float[] m = new float[n];
+        m[0] = secants[0];
+        m[n - 1] = secants[n - 2];
+        for (int k = 1; k < n - 1; k++) {
+            if (secants[k - 1] * secants[k] <= 0)
+                m[k] = 0;
+            else
+                m[k] = (secants[k - 1] + secants[k]) / 2;
+        }
+        for (int k = 0; k < n - 1; k++) {
+            if (secants[k] == 0) {
+                m[k] = 0;
+                m[k + 1] = 0;
+                continue;
+            }
+            final float a = m[k] / secants[k];
+            final float b = m[k + 1] / secants[k];
+            final float norm = a * a + b * b;
+            if (norm > 9) {
+                final float tau = 3 / (float) Math.sqrt(norm);
+                m[k] = tau * a * secants[k];
+                m[k + 1] = tau * b * secants[k];
+            }
+        }
+        return m;
+    }
 }
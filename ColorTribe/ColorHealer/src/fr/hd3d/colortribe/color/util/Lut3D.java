@@ -0,0 +1,263 @@
+package fr.hd3d.colortribe.color.util;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+
+/**
+ * A 3D LUT : size^3 RGB entries on a regular grid over [0, 1]^3, red varying fastest like in .cube files.
+ *
+ * The grid is filled in parallel, one fork-join task per group of blue slices, and looked up with tetrahedral
+ * interpolation. It is written as a .cube file, or in a compact binary format of 16 bit values.
+ */
+public class Lut3D {
+    public static final int[] STANDARD_SIZES = { 17, 33, 65 };
+
+    private static final int BINARY_MAGIC = 0x4354334C; // "CT3L"
+    private static final int BINARY_VERSION = 1;
+    private static final int MAX_16_BITS = 65535;
+
+    private final int size;
+    // rgb of entry (r, g, b) at 3 * ((b * size + g) * size + r)
+    private final float[] data;
+
+    /**
+     * Function sampled on the grid, called from several threads at once.
+     */
+    public interface IEntryFunction {
+        /**
+         * @param out
+         *            receives the rgb of the entry
+         * @param scratch
+         *            3 values free for the function, reused for the entries of a slice
+         */
+        void evaluate(float r, float g, float b, float[] out, float[] scratch);
+    }
+
+    public Lut3D(int size) {
+        if (size < 2)
+            throw new IllegalArgumentException("A 3D LUT needs at least 2 entries per axis.");
+        this.size = size;
+        data = new float[3 * size * size * size];
+    }
+
+    /**
+     * Identity LUT.
+     */
+    public static Lut3D identity(int size) {
+        return build(size, new IEntryFunction() {
+            public void evaluate(float r, float g, float b, float[] out, float[] scratch) {
+                out[0] = r;
+                out[1] = g;
+                out[2] = b;
+            }
+        });
+    }
+
+    /**
+     * Samples a function on the grid, in parallel over the blue slices.
+     */
+    public static Lut3D build(int size, IEntryFunction function) {
+        Lut3D lut = new Lut3D(size);
+        ForkJoinPool.commonPool().invoke(lut.new FillSlices(function, 0, size));
+        return lut;
+    }
+
+    private class FillSlices extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final IEntryFunction function;
+        private final int fromBlue;
+        private final int toBlue;
+
+        private FillSlices(IEntryFunction function, int fromBlue, int toBlue) {
+            this.function = function;
+            this.fromBlue = fromBlue;
+            this.toBlue = toBlue;
+        }
+
+        @Override
+        protected void compute() {
+            if (toBlue - fromBlue > 1) {
+                int middle = (fromBlue + toBlue) >>> 1;
+                invokeAll(new FillSlices(function, fromBlue, middle), new FillSlices(function, middle, toBlue));
+                return;
+            }
+            final float scale = 1f / (size - 1);
+            final float[] out = new float[3];
+            final float[] scratch = new float[3];
+            final float b = fromBlue * scale;
+            int index = 3 * fromBlue * size * size;
+            for (int g = 0; g < size; g++) {
+                for (int r = 0; r < size; r++) {
+                    function.evaluate(r * scale, g * scale, b, out, scratch);
+                    data[index++] = out[0];
+                    data[index++] = out[1];
+                    data[index++] = out[2];
+                }
+            }
+        }
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public void get(int r, int g, int b, float[] out) {
+        int index = 3 * ((b * size + g) * size + r);
+        out[0] = data[index];
+        out[1] = data[index + 1];
+        out[2] = data[index + 2];
+    }
+
+    public void set(int r, int g, int b, float red, float green, float blue) {
+        int index = 3 * ((b * size + g) * size + r);
+        data[index] = red;
+        data[index + 1] = green;
+        data[index + 2] = blue;
+    }
+
+    /**
+     * Tetrahedral interpolation : the grid cell is split in 6 tetrahedra along its black to white diagonal, and the 4
+     * corners of the one holding the point are blended. Inputs are clamped to [0, 1].
+     */
+    public void lookup(float r, float g, float b, float[] out) {
+        final int last = size - 1;
+        final float fr = clamp(r) * last;
+        final float fg = clamp(g) * last;
+        final float fb = clamp(b) * last;
+        final int ir = Math.min((int) fr, last - 1);
+        final int ig = Math.min((int) fg, last - 1);
+        final int ib = Math.min((int) fb, last - 1);
+        final float dr = fr - ir;
+        final float dg = fg - ig;
+        final float db = fb - ib;
+
+        // offsets of the neighbour entries along each axis
+        final int stepR = 3;
+        final int stepG = 3 * size;
+        final int stepB = 3 * size * size;
+        final int c000 = 3 * ((ib * size + ig) * size + ir);
+        final int c111 = c000 + stepR + stepG + stepB;
+
+        // corners of the tetrahedron after black, and their weights
+        final int first, second;
+        final float w0, w1, w2, w3;
+        if (dr >= dg) {
+            if (dg >= db) {
+                first = c000 + stepR;
+                second = first + stepG;
+                w0 = 1 - dr; w1 = dr - dg; w2 = dg - db; w3 = db;
+            } else if (dr >= db) {
+                first = c000 + stepR;
+                second = first + stepB;
+                w0 = 1 - dr; w1 = dr - db; w2 = db - dg; w3 = dg;
+            } else {
+                first = c000 + stepB;
+                second = first + stepR;
+                w0 = 1 - db; w1 = db - dr; w2 = dr - dg; w3 = dg;
+            }
+        } else {
+            if (db >= dg) {
+                first = c000 + stepB;
+                second = first + stepG;
+                w0 = 1 - db; w1 = db - dg; w2 = dg - dr; w3 = dr;
+            } else if (db >= dr) {
+                first = c000 + stepG;
+                second = first + stepB;
+                w0 = 1 - dg; w1 = dg - db; w2 = db - dr; w3 = dr;
+            } else {
+                first = c000 + stepG;
+                second = first + stepR;
+                w0 = 1 - dg; w1 = dg - dr; w2 = dr - db; w3 = db;
+            }
+        }
+        for (int c = 0; c < 3; c++)
+            out[c] = w0 * data[c000 + c] + w1 * data[first + c] + w2 * data[second + c] + w3 * data[c111 + c];
+    }
+
+    private static float clamp(float value) {
+        return value < 0 ? 0 : (value > 1 ? 1 : value);
+    }
+
+    /**
+     * Streams the LUT as a .cube file (Adobe / Resolve format), 6 decimals per value. The stream isn't closed.
+     */
+    public void writeCube(OutputStream output, String title) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(output, Charset.forName("US-ASCII")), 1 << 16);
+        if (title != null)
+            writer.write("TITLE \"" + title.replace('"', '\'') + "\"\n");
+        writer.write("LUT_3D_SIZE " + size + "\n");
+        writer.write("DOMAIN_MIN 0.0 0.0 0.0\nDOMAIN_MAX 1.0 1.0 1.0\n");
+        char[] line = new char[3 * 12];
+        for (int index = 0; index < data.length; index += 3) {
+            int length = 0;
+            for (int c = 0; c < 3; c++) {
+                if (c > 0)
+                    line[length++] = ' ';
+                length = appendFixed6(line, length, data[index + c]);
+            }
+            line[length++] = '\n';
+            writer.write(line, 0, length);
+        }
+        writer.flush();
+    }
+
+    /**
+     * Writes value with 6 decimals, without going through String.format.
+     */
+    private static int appendFixed6(char[] buffer, int offset, float value) {
+        long scaled = Math.round(value * 1000000.0);
+        if (scaled < 0) {
+            buffer[offset++] = '-';
+            scaled = -scaled;
+        }
+        long integer = scaled / 1000000;
+        long fraction = scaled % 1000000;
+        String digits = Long.toString(integer);
+        digits.getChars(0, digits.length(), buffer, offset);
+        offset += digits.length();
+        buffer[offset++] = '.';
+        for (int divisor = 100000; divisor > 0; divisor /= 10) {
+            buffer[offset++] = (char) ('0' + fraction / divisor);
+            fraction %= divisor;
+        }
+        return offset;
+    }
+
+    /**
+     * Compact binary form : magic, version, size, then every value as an unsigned 16 bit integer over [0, 1], big
+     * endian, in .cube order. Values out of [0, 1] are clamped. The stream isn't closed.
+     */
+    public void writeBinary(OutputStream output) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(output, 1 << 16));
+        out.writeInt(BINARY_MAGIC);
+        out.writeInt(BINARY_VERSION);
+        out.writeInt(size);
+        for (float value : data)
+            out.writeShort(Math.round(clamp(value) * MAX_16_BITS));
+        out.flush();
+    }
+
+    public static Lut3D readBinary(InputStream input) throws IOException {
+        DataInputStream in = new DataInputStream(input);
+        if (in.readInt() != BINARY_MAGIC)
+            throw new IOException("Not a 3D LUT binary file.");
+        int version = in.readInt();
+        if (version != BINARY_VERSION)
+            throw new IOException("Unsupported 3D LUT binary version " + version + ".");
+        Lut3D lut = new Lut3D(in.readInt());
+        for (int i = 0; i < lut.data.length; i++)
+            lut.data[i] = in.readUnsignedShort() / (float) MAX_16_BITS;
+        return lut;
+    }
+}
@@ -2,36 +2,99 @@ package fr.hd3d.colortribe.com;
 
 import java.awt.Color;
 import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.net.SocketException;
-import java.util.List;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Logger;
 
 import javax.swing.JOptionPane;
 
-import fr.hd3d.colortribe.color.type.Point2f;
 import fr.hd3d.colortribe.color.util.ColorMath;
 import fr.hd3d.colortribe.core.ColorHealerModel;
-import fr.hd3d.colortribe.core.correction.AbstractCorrection;
 
 
 public class CHSocketServer extends ServerSocket implements ISocketServer
 {
+    private final static Logger LOGGER = Logger.getLogger(CHSocketServer.class.getSimpleName());
     final static private int DEFAULT_PORT = 7935;
+    // ColorKeeper clients which don't know GET_CAPABILITIES never answer
+    final static private int CAPABILITIES_TIMEOUT = 2000;
+    final static private int DEFAULT_READ_TIMEOUT = 30000;
+    // maximum time to wait for a reply in ms, 0 to wait forever
+    final static private String READ_TIMEOUT_FILE = "custom_parameters/socket_timeout.txt";
 
     static private CHSocketServer _instance = null;
     private Socket _socket = null;
+    // one reader and one writer for the whole connection, so no reply byte is lost between two requests
+    private BufferedReader _reader = null;
+    private PrintWriter _writer = null;
+    private OutputStream _output = null;
+    private final int _readTimeout;
+    // replies of requests which timed out, still to come before the next reply
+    private int _lateReplies = 0;
+    // a client may answer GET_CAPABILITIES after its timeout, or never
+    private boolean _isCapabilitiesLate = false;
+    private final Map<String, LatencyHistogram> _latencies = new LinkedHashMap<String, LatencyHistogram>();
     private Color _currentPatchColor = Color.CYAN;
     private String _lastMessage="";
+    private boolean _binaryLut = false;
+    private ByteBuffer _lutBuffer = null;
     
 
     private CHSocketServer() throws IOException
     {
         super(DEFAULT_PORT);
+        _readTimeout = readTimeoutSetting();
+    }
+
+    /**
+     * Read timeout from {@link #READ_TIMEOUT_FILE}, the default one if the file is missing or invalid. A reply
+     * arriving too late raises a SocketTimeoutException.
+     */
+    private static int readTimeoutSetting()
+    {
+        File file = new File(READ_TIMEOUT_FILE);
+        if (!file.exists())
+            return DEFAULT_READ_TIMEOUT;
+        BufferedReader reader = null;
+        try
+        {
+            reader = new BufferedReader(new FileReader(file));
+            String line = reader.readLine();
+            int timeout = line != null ? Integer.parseInt(line.trim()) : -1;
+            if (timeout >= 0)
+                return timeout;
+        }
+        catch (IOException e)
+        {}
+        catch (NumberFormatException e)
+        {}
+        finally
+        {
+            if (reader != null)
+            {
+                try
+                {
+                    reader.close();
+                }
+                catch (IOException e)
+                {}
+            }
+        }
+        System.err.println("Invalid " + READ_TIMEOUT_FILE + ", read timeout set to " + DEFAULT_READ_TIMEOUT + " ms.");
+        return DEFAULT_READ_TIMEOUT;
     }
     public Color getCurrentPatchColor(){
         return _currentPatchColor;
@@ -62,11 +125,18 @@ public class CHSocketServer extends ServerSocket implements ISocketServer
     public String acceptCom() throws IOException
     {
         _socket = super.accept();
+        _socket.setSoTimeout(_readTimeout);
+        _output = _socket.getOutputStream();
+        _reader = new BufferedReader(new InputStreamReader(_socket.getInputStream()));
+        _writer = new PrintWriter(new OutputStreamWriter(_output), false);
+        _lateReplies = 0;
+        _isCapabilitiesLate = false;
         try
         {
             String message = sendMessageAndWait("GET_SCREEN_INFO\n");
             System.out.println("Received : " + message);
             System.out.println("on " + getInetAdressHostName());           
+            negotiateCapabilities();
             return message;
         }
         catch (IllegalAccessException e)
@@ -77,11 +147,91 @@ public class CHSocketServer extends ServerSocket implements ISocketServer
         }
     }
 
-    public void closeCom() throws IOException
+    /**
+     * Ask the client for the optional protocol features. Old clients ignore the request : the text protocol is kept.
+     */
+    private void negotiateCapabilities() throws IllegalAccessException, IOException
+    {
+        _binaryLut = false;
+        _socket.setSoTimeout(CAPABILITIES_TIMEOUT);
+        try
+        {
+            String reply = sendMessageAndWait("GET_CAPABILITIES\n");
+            _binaryLut = reply != null && reply.startsWith("CAPABILITIES") && reply.contains("LUT_BIN");
+        }
+        catch (SocketTimeoutException e)
+        {
+            // old clients never answer : recognize the reply instead of counting it
+            _lateReplies--;
+            _isCapabilitiesLate = true;
+            System.out.println("No capabilities received, using text LUT upload.");
+        }
+        finally
+        {
+            _socket.setSoTimeout(_readTimeout);
+        }
+    }
+
+    /**
+     * Round-trip time histograms of the requests, per command type.
+     */
+    public String getLatencyReport()
+    {
+        StringBuilder sb = new StringBuilder();
+        synchronized (_latencies)
+        {
+            for (Map.Entry<String, LatencyHistogram> entry : _latencies.entrySet())
+                sb.append(entry.getKey()).append(" : ").append(entry.getValue()).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private void recordLatency(String message, long nanos)
+    {
+        String command = getCommandType(message);
+        synchronized (_latencies)
+        {
+            LatencyHistogram histogram = _latencies.get(command);
+            if (histogram == null)
+            {
+                histogram = new LatencyHistogram();
+                _latencies.put(command, histogram);
+            }
+            histogram.record(nanos);
+        }
+    }
+
+    private static String getCommandType(String message)
     {
+        int end = 0;
+        while (end < message.length() && message.charAt(end) != ' ' && message.charAt(end) != '\n')
+            end++;
+        return message.substring(0, end);
+    }
+
+    /**
+     * Write one request line, the message may already end with a new line.
+     */
+    private void writeLine(String message)
+    {
+        int end = message.length();
+        while (end > 0 && message.charAt(end - 1) == '\n')
+            end--;
+        _writer.write(message, 0, end);
+        _writer.write('\n');
+    }
+
+    public synchronized void closeCom() throws IOException
+    {
+        String latencies = getLatencyReport();
+        if (latencies.length() > 0)
+            LOGGER.fine("Request latencies :\n" + latencies);
         if (_socket != null)
             _socket.close();
         _socket = null;
+        _reader = null;
+        _writer = null;
+        _output = null;
         super.close();
     }
 
@@ -105,7 +255,33 @@ public class CHSocketServer extends ServerSocket implements ISocketServer
         }
     }
 
-    public String sendMessageAndWait(String message) throws IllegalAccessException, IOException
+    /**
+     * Reads the reply of the last request. The client answers requests in order, so the replies of requests which
+     * timed out come first : they are skipped.
+     */
+    private String readReply() throws IOException
+    {
+        while (true)
+        {
+            String line = _reader.readLine();
+            if (line == null)
+                return null;
+            if (_isCapabilitiesLate && line.startsWith("CAPABILITIES"))
+            {
+                _isCapabilitiesLate = false;
+                continue;
+            }
+            if (_lateReplies > 0)
+            {
+                _lateReplies--;
+                System.out.println("Late reply skipped : " + line);
+                continue;
+            }
+            return line;
+        }
+    }
+
+    public synchronized String sendMessageAndWait(String message) throws IllegalAccessException, IOException
     {
         String save = message;
         if (_socket == null)
@@ -114,13 +290,18 @@ public class CHSocketServer extends ServerSocket implements ISocketServer
         {
             return "error";
         }
-        BufferedReader plec = new BufferedReader(new InputStreamReader(_socket.getInputStream()));
-        PrintWriter pred = new PrintWriter(new OutputStreamWriter(_socket.getOutputStream()), true);
+        long start = System.nanoTime();
         try
         {
-            pred.println(message); // envoi d'un message
-            message = plec.readLine();
-         
+            writeLine(message); // envoi d'un message
+            _writer.flush();
+            message = readReply();
+            recordLatency(save, System.nanoTime() - start);
+        }
+        catch (SocketTimeoutException e)
+        {
+            _lateReplies++;
+            throw e;
         }
         catch (SocketException e)
         {
@@ -183,7 +364,7 @@ public class CHSocketServer extends ServerSocket implements ISocketServer
         }
     }
 
-    public void sendMessage(String message) throws IllegalAccessException, IOException
+    public synchronized void sendMessage(String message) throws IllegalAccessException, IOException
     {
         if (_socket == null)
             throw new IllegalAccessException("socket wasn't init.");
@@ -192,19 +373,23 @@ public class CHSocketServer extends ServerSocket implements ISocketServer
             System.out.println("sendMessage error");
         }
       
-        PrintWriter pred = new PrintWriter(new OutputStreamWriter(_socket.getOutputStream()), true);
-        pred.println(message); // envoi d'un message
+        writeLine(message); // envoi d'un message
+        _writer.flush();
         _lastMessage = message;
     }
     
-    public boolean sendLut(List<Point2f> red, List<Point2f> green, List<Point2f> blue, boolean showMire) throws IllegalAccessException, IOException {
-        int size = (AbstractCorrection.LUT_MAX_VALUE + 1);
+    public synchronized boolean sendLut(float[] red, float[] green, float[] blue, boolean showMire) throws IllegalAccessException, IOException {
+        if (_binaryLut)
+            return sendBinaryLut(red, green, blue);
+        int size = red.length;
         sendMessageAndWait("SET_LUT_SIZE " + ColorHealerModel._instance.getDisplayDevice().getOsIndex()+ " -"+ size + "-\n");
+        // flushed once for the whole table
         for (int i = 0; i < size; i++) {
-            int[] color = ColorMath.floatColorToUShortColor(red.get(i)._b, green.get(i)._b, blue.get(i)._b);
+            int[] color = ColorMath.floatColorToUShortColor(red[i], green[i], blue[i]);
             
-            sendMessage("VALUE " +ColorHealerModel._instance.getDisplayDevice().getOsIndex()+" -" + color[0] + "-" +  color[1] + "-" +  color[2] + "-\n");
+            writeLine("VALUE " +ColorHealerModel._instance.getDisplayDevice().getOsIndex()+" -" + color[0] + "-" +  color[1] + "-" +  color[2] + "-\n");
         }
+        _writer.flush();
         sendMessage("SET_LUT_DONE "+ ColorHealerModel._instance.getDisplayDevice().getOsIndex()+"\n");
 //        String returnString = sendMessageAndWait("SET_CALIBRATION_LUT ON\n");
 //        if (returnString.compareTo("SET_CALIBRATION_LUT FAILED") == 0) {
@@ -214,6 +399,54 @@ public class CHSocketServer extends ServerSocket implements ISocketServer
 //            sendMessageAndWait("SHOW_MIRE ON\n");
         return true;
     }
+
+    /**
+     * SET_LUT_BIN header line followed by size little-endian unsigned short r, g, b triplets, in a single write.
+     */
+    private boolean sendBinaryLut(float[] red, float[] green, float[] blue) throws IllegalAccessException, IOException {
+        if (_socket == null)
+            throw new IllegalAccessException("socket wasn't init.");
+        int size = red.length;
+        byte[] header = ("SET_LUT_BIN " + ColorHealerModel._instance.getDisplayDevice().getOsIndex() + " " + size + "\n")
+                .getBytes("US-ASCII");
+        int capacity = header.length + size * 3 * 2;
+        if (_lutBuffer == null || _lutBuffer.capacity() < capacity)
+            _lutBuffer = ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+        _lutBuffer.clear();
+        _lutBuffer.put(header);
+        for (int i = 0; i < size; i++) {
+            _lutBuffer.putShort(toUShort(red[i]));
+            _lutBuffer.putShort(toUShort(green[i]));
+            _lutBuffer.putShort(toUShort(blue[i]));
+        }
+        long start = System.nanoTime();
+        _writer.flush();
+        _output.write(_lutBuffer.array(), 0, _lutBuffer.position());
+        _output.flush();
+        _lastMessage = "";
+
+        String reply;
+        try
+        {
+            reply = readReply();
+        }
+        catch (SocketTimeoutException e)
+        {
+            _lateReplies++;
+            throw e;
+        }
+        recordLatency("SET_LUT_BIN", System.nanoTime() - start);
+        return reply != null && reply.startsWith("SET_LUT_BIN_OK");
+    }
+
+    private static short toUShort(float value) {
+        int v = (int) (65535 * value + .5f);
+        if (v < 0)
+            v = 0;
+        else if (v > 65535)
+            v = 65535;
+        return (short) v;
+    }
     
     public void updateFile(String infos) throws IllegalAccessException, IOException {
         infos = infos.replace('\n','#');
@@ -2,9 +2,6 @@ package fr.hd3d.colortribe.com;
 
 import java.awt.Color;
 import java.io.IOException;
-import java.util.List;
-
-import fr.hd3d.colortribe.color.type.Point2f;
 
 
 public interface ISocketServer
@@ -23,7 +20,10 @@ public interface ISocketServer
 
     public void sendMessage(String message) throws IllegalAccessException, IOException;
 
-    public boolean sendLut(List<Point2f> red, List<Point2f> green, List<Point2f> blue, boolean showMire)
+    /**
+     * Send a correction LUT, one corrected value in [0, 1] per entry and channel. The LUT size is the arrays length.
+     */
+    public boolean sendLut(float[] red, float[] green, float[] blue, boolean showMire)
             throws IllegalAccessException, IOException;
 
     public void updateFile(String infos) throws IllegalAccessException, IOException;
@@ -0,0 +1,61 @@
+package fr.hd3d.colortribe.com;
+
+/**
+ * Round-trip times of one command type, counted in fixed millisecond buckets.
+ */
+class LatencyHistogram
+{
+    // upper bounds of the buckets in ms, the last bucket counts everything above
+    private static final long[] BOUNDS = { 1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000 };
+
+    private final long[] _counts = new long[BOUNDS.length + 1];
+    private long _total = 0;
+    private long _totalNanos = 0;
+    private long _maxNanos = 0;
+
+    synchronized void record(long nanos)
+    {
+        long millis = nanos / 1000000;
+        int bucket = 0;
+        while (bucket < BOUNDS.length && millis >= BOUNDS[bucket])
+            bucket++;
+        _counts[bucket]++;
+        _total++;
+        _totalNanos += nanos;
+        _maxNanos = Math.max(_maxNanos, nanos);
+    }
+
+    synchronized long getCount()
+    {
+        return _total;
+    }
+
+    /**
+     * @return the mean latency in ms
+     */
+    synchronized float getMean()
+    {
+        if (_total == 0)
+            return 0;
+        return _totalNanos / (float) _total / 1000000f;
+    }
+
+    public synchronized String toString()
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append(_total).append(" calls, mean ").append(getMean()).append(" ms, max ").append(_maxNanos / 1000000f)
+                .append(" ms |");
+        for (int i = 0; i < _counts.length; i++)
+        {
+            if (_counts[i] == 0)
+                continue;
+            sb.append(' ');
+            if (i < BOUNDS.length)
+                sb.append('<').append(BOUNDS[i]);
+            else
+                sb.append(">=").append(BOUNDS[BOUNDS.length - 1]);
+            sb.append("ms:").append(_counts[i]);
+        }
+        return sb.toString();
+    }
+}
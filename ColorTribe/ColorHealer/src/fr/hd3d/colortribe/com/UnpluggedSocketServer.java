@@ -2,9 +2,7 @@ package fr.hd3d.colortribe.com;
 
 import java.awt.Color;
 import java.io.IOException;
-import java.util.List;
 
-import fr.hd3d.colortribe.color.type.Point2f;
 
 
 public class UnpluggedSocketServer implements ISocketServer
@@ -66,7 +64,7 @@ public class UnpluggedSocketServer implements ISocketServer
     {
     }
 
-    public boolean sendLut(List<Point2f> red, List<Point2f> green, List<Point2f> blue, boolean showMire)
+    public boolean sendLut(float[] red, float[] green, float[] blue, boolean showMire)
             throws IllegalAccessException, IOException
     {
        
@@ -398,9 +398,9 @@ public class ColorHealerModel
 
         public MultiplexedCorrection()
         {
-            _redCorrection = new ArrayList<Point2f>();
-            _blueCorrection = new ArrayList<Point2f>();
-            _greenCorrection = new ArrayList<Point2f>();
+            _redCorrection = new float[0];
+            _blueCorrection = new float[0];
+            _greenCorrection = new float[0];
         }
 
         @Override
@@ -414,30 +414,27 @@ public class ColorHealerModel
                 currentCorr = _tmpCorrection;
 
             currentCorr.computeColorCorrection();
-            _redCorrection.clear();
-            _blueCorrection.clear();
-            _greenCorrection.clear();
-            int range = currentCorr.getRedCorrection().size();
-            for (int i = 0; i < currentCorr.getRedCorrection().size(); i++)
+            int range = currentCorr.getRedCorrection().length;
+            if (_redCorrection.length != range)
             {
-                _redCorrection.add(new Point2f(currentCorr.getRedCorrection().get(i)));
-            }
-            for (int i = 0; i < currentCorr.getGreenCorrection().size(); i++)
-            {
-                _greenCorrection.add(new Point2f(currentCorr.getGreenCorrection().get(i)));
-            }
-            for (int i = 0; i < currentCorr.getBlueCorrection().size(); i++)
-            {
-                _blueCorrection.add(new Point2f(currentCorr.getBlueCorrection().get(i)));
+                _redCorrection = new float[range];
+                _greenCorrection = new float[range];
+                _blueCorrection = new float[range];
             }
+            System.arraycopy(currentCorr.getRedCorrection(), 0, _redCorrection, 0, range);
+            System.arraycopy(currentCorr.getGreenCorrection(), 0, _greenCorrection, 0, range);
+            System.arraycopy(currentCorr.getBlueCorrection(), 0, _blueCorrection, 0, range);
             if (isSoftWhiteCorrectionEnable())
             {
+                // the white correction is linear, add (gain - 1) * x to each curve
+                float redSlope = (softCorrection.getGain(0) - 1) / (range - 1);
+                float greenSlope = (softCorrection.getGain(1) - 1) / (range - 1);
+                float blueSlope = (softCorrection.getGain(2) - 1) / (range - 1);
                 for (int i = 0; i < range; i++)
                 {
-                    float x = i / (float) (range - 1);
-                    _redCorrection.get(i)._b += softCorrection.getValue(0, x) - 1 * x;
-                    _greenCorrection.get(i)._b += softCorrection.getValue(1, x) - 1 * x;
-                    _blueCorrection.get(i)._b += softCorrection.getValue(2, x) - 1 * x;
+                    _redCorrection[i] += redSlope * i;
+                    _greenCorrection[i] += greenSlope * i;
+                    _blueCorrection[i] += blueSlope * i;
                 }
             }
         }
@@ -547,6 +544,14 @@ public class ColorHealerModel
             return _corrections.get(_currentCorrectionIndex).getCalibratedGamma();
         }
 
+        @Override
+        public float[] getValidationDeltaE()
+        {
+            if (_currentCorrectionIndex == -1)
+                return _tmpCorrection.getValidationDeltaE();
+            return _corrections.get(_currentCorrectionIndex).getValidationDeltaE();
+        }
+
     }
 
     public Point3f getCorrectionDelta(int correctionIndex)
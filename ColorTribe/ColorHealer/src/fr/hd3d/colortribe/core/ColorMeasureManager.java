@@ -1,69 +1,236 @@
 package fr.hd3d.colortribe.core;
 
 import java.awt.Color;
-import java.io.IOException;
+import java.util.Iterator;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
 
 import fr.hd3d.colortribe.color.ColorMeasure;
 import fr.hd3d.colortribe.color.type.Point3f;
-import fr.hd3d.colortribe.core.predicate.CountValuesPredicate;
+import fr.hd3d.colortribe.core.predicate.ConvergedValuesPredicate;
 import fr.hd3d.colortribe.core.predicate.IPredicate;
-import fr.hd3d.colortribe.core.probes.ISampleListener;
 import fr.hd3d.colortribe.core.probes.SampleGrabber;
+import fr.hd3d.colortribe.core.probes.SettlingDetector;
 
 
-class ColorMeasureManager implements ISampleListener
+/**
+ * Measurement engine : patch jobs are queued and processed by a single long-lived probe worker.
+ *
+ * As soon as the probe is done with a patch, the worker displays the next queued patch and starts integrating it,
+ * while the finished measure is handed over to the callers from a separate notifier thread. The probe itself is only
+ * read by the {@link SampleGrabber} thread. Samples are only accepted once the {@link SettlingDetector} sees the display
+ * stable on the new patch.
+ */
+class ColorMeasureManager
 {
     static final ColorMeasureManager _instance = new ColorMeasureManager();
-    private IPredicate _predicate;
-    private ColorMeasure _currentMeasure;
-    private MeasuresSet _currentMeasuresSet;
-    private final Object lock = new Object();
 
-    synchronized void mesurePatch(MeasuresSet currentMeasuresSet, Color patchColor, String label, boolean isPatch) throws IllegalAccessException, IOException
+    /** Reads per patch : bright patches converge after the minimum, dark noisy ones go up to the maximum. */
+    private static final int MIN_SAMPLES = 2;
+    private static final int MAX_SAMPLES = 8;
+    /** Standard error allowed on Y, relative to Y. */
+    private static final float Y_TOLERANCE = 0.005f;
+    /** Standard error allowed on x and y. */
+    private static final float XY_TOLERANCE = 0.0005f;
+    /**
+     * Display settling : longest window of readings which must agree, drift allowed on Y (relative) and x, y, and time
+     * limit. The window starts at the minimum samples of a measure.
+     */
+    private static final int MAX_SETTLING_WINDOW = 4;
+    private static final float SETTLING_Y_TOLERANCE = 0.01f;
+    private static final float SETTLING_XY_TOLERANCE = 0.001f;
+    private static final long SETTLING_TIMEOUT = 10000;
+
+    private final BlockingQueue<PatchJob> _jobs = new LinkedBlockingQueue<PatchJob>();
+    private final ExecutorService _notifier = Executors.newSingleThreadExecutor(new DaemonThreadFactory(
+            "measure notifier"));
+    private final SettlingDetector _settlingDetector = new SettlingDetector(MIN_SAMPLES, MAX_SETTLING_WINDOW,
+            SETTLING_Y_TOLERANCE, SETTLING_XY_TOLERANCE, SETTLING_TIMEOUT);
+    private Thread _worker = null;
+
+    private static class PatchJob
     {
-        this._currentMeasuresSet = currentMeasuresSet;
-        if (isPatch)
-            ColorHealerModel._instance.getSocketServer().displayColor(patchColor, false);
-        else
-            ColorHealerModel._instance.getSocketServer().displayFullRec(patchColor);
-        _currentMeasure = new ColorMeasure(patchColor, label);
-        _predicate = new CountValuesPredicate(_currentMeasure, 1);
-        SampleGrabber.getInstance().startSamplesGrab(_instance);
-        synchronized (lock)
+        private final MeasuresSet _measuresSet;
+        private final Color _patchColor;
+        private final String _label;
+        private final boolean _isPatch;
+        private final CompletableFuture<ColorMeasure> _future = new CompletableFuture<ColorMeasure>();
+
+        private PatchJob(MeasuresSet measuresSet, Color patchColor, String label, boolean isPatch)
+        {
+            _measuresSet = measuresSet;
+            _patchColor = patchColor;
+            _label = label;
+            _isPatch = isPatch;
+        }
+    }
+
+    private static class DaemonThreadFactory implements ThreadFactory
+    {
+        private final String _name;
+
+        private DaemonThreadFactory(String name)
+        {
+            _name = name;
+        }
+
+        public Thread newThread(Runnable runnable)
         {
-            try
+            Thread thread = new Thread(runnable, _name);
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    private class ProbeWorker implements Runnable
+    {
+        public void run()
+        {
+            while (true)
             {
-                lock.wait();
+                PatchJob job;
+                try
+                {
+                    job = _jobs.take();
+                }
+                catch (InterruptedException e)
+                {
+                    return;
+                }
+                if (job._future.isDone())
+                    continue;
+                try
+                {
+                    final ColorMeasure measure = measure(job);
+                    job._measuresSet.addMeasure(measure);
+                    complete(job, measure, null);
+                }
+                catch (Throwable e)
+                {
+                    complete(job, null, e);
+                }
             }
-            catch (InterruptedException e)
-            {}
         }
     }
 
-    public void measureDone(Point3f sample)
+    private ColorMeasureManager()
+    {}
+
+    private synchronized void ensureWorker()
     {
-        if ((sample._c > 0))
+        if (_worker == null || !_worker.isAlive())
         {
-            _currentMeasure.addSample(sample);
-            // System.out.println(sample);
+            _worker = new Thread(new ProbeWorker(), "probe worker");
+            _worker.setDaemon(true);
+            _worker.start();
         }
-        else
+    }
+
+    /**
+     * Queue a patch measure. The returned future is completed once the measure has been added to the measures set.
+     */
+    CompletableFuture<ColorMeasure> submitPatch(MeasuresSet measuresSet, Color patchColor, String label,
+            boolean isPatch)
+    {
+        PatchJob job = new PatchJob(measuresSet, patchColor, label, isPatch);
+        ensureWorker();
+        _jobs.add(job);
+        return job._future;
+    }
+
+    /**
+     * Drop the queued patches of a measures set which are not being measured yet. Patches queued for other sets are
+     * left to their callers.
+     */
+    void cancelPendingPatches(MeasuresSet measuresSet)
+    {
+        Iterator<PatchJob> pending = _jobs.iterator();
+        while (pending.hasNext())
         {
-            System.err.println("Negative values !!!");
+            PatchJob job = pending.next();
+            if (job._measuresSet != measuresSet)
+                continue;
+            // the worker skips a job it took meanwhile once cancelled
+            job._future.cancel(false);
+            pending.remove();
+        }
+    }
+
+    static ColorMeasure waitFor(CompletableFuture<ColorMeasure> future) throws Exception
+    {
+        try
+        {
+            return future.get();
+        }
+        catch (ExecutionException e)
+        {
+            if (e.getCause() instanceof Exception)
+                throw (Exception) e.getCause();
+            throw e;
+        }
+    }
+
+    private void displayPatch(PatchJob job)
+    {
+        if (job._isPatch)
+            ColorHealerModel._instance.getSocketServer().displayColor(job._patchColor, false);
+        else
+            ColorHealerModel._instance.getSocketServer().displayFullRec(job._patchColor);
+    }
 
+    private ColorMeasure measure(PatchJob job) throws Exception
+    {
+        if (ColorHealerModel._instance.getProbe() == null)
+            throw new IllegalStateException("No probe selected.");
+        SampleGrabber sampler = SampleGrabber.getInstance();
+        displayPatch(job);
+        ColorMeasure measure = new ColorMeasure(job._patchColor, job._label);
+        IPredicate predicate = new ConvergedValuesPredicate(measure, MIN_SAMPLES, MAX_SAMPLES, Y_TOLERANCE,
+                XY_TOLERANCE);
+        sampler.settle(job._measuresSet.predictLuminance(job._patchColor));
+        // the pre-read only picks the integration time, the settling detector judges the display on the reads that
+        // follow, started once the patch is displayed
+        SampleGrabber.Subscription samples = sampler.subscribe(System.nanoTime());
+        try
+        {
+            // the stable readings are the first samples of the measure
+            for (Point3f sample : _settlingDetector.awaitSettled(samples))
+                addSample(measure, sample);
+            while (!predicate.isDone())
+                addSample(measure, samples.take());
         }
-        if (_predicate.isDone())
+        finally
         {
-            SampleGrabber.getInstance().stopSamplesGrab();
-            // if (allowAddSample) {
-           _currentMeasuresSet.addMeasure(_currentMeasure);
-            // }else{
-            // _currentMeasure =null;
-            // }
-            synchronized (lock)
+            samples.close();
+            sampler.endPatch();
+        }
+        return measure;
+    }
+
+    private static void addSample(ColorMeasure measure, Point3f sample)
+    {
+        if (sample != null && sample._c > 0)
+            measure.addSample(sample);
+        else
+            System.err.println("Negative values !!!");
+    }
+
+    private void complete(final PatchJob job, final ColorMeasure measure, final Throwable error)
+    {
+        // dependant actions run on the notifier so the worker can go on with the next patch
+        _notifier.execute(new Runnable() {
+            public void run()
             {
-                lock.notify();
+                if (error != null)
+                    job._future.completeExceptionally(error);
+                else
+                    job._future.complete(measure);
             }
-        }
+        });
     }
 }
@@ -9,6 +9,7 @@ public class DisplayDevice
     private EDisplayDeviceType _type = null;
     private String _modelID = null;
     private String _profilName = null;
+    private int _lutBits = 8;
     
     public void setUid(String uid)
     {
@@ -138,4 +139,27 @@ public class DisplayDevice
     {
         _type = type;
     }
+
+    /**
+     * Depth of the display RAMDAC : the correction LUT has 2^bits entries per channel.
+     * 
+     * @param lutBits
+     *            8, 10, 12, 14 or 16
+     */
+    public void setLutBits(int lutBits)
+    {
+        if (lutBits < 8 || lutBits > 16 || lutBits % 2 != 0)
+            throw new IllegalArgumentException("Unsupported LUT depth : " + lutBits + " bits");
+        _lutBits = lutBits;
+    }
+
+    public int getLutBits()
+    {
+        return _lutBits;
+    }
+
+    public int getLutSize()
+    {
+        return 1 << _lutBits;
+    }
 }
@@ -3,21 +3,117 @@ package fr.hd3d.colortribe.core;
 import java.awt.Color;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
-import java.util.ListIterator;
 import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
 
 import javax.swing.JOptionPane;
 
 import fr.hd3d.colortribe.color.ColorMeasure;
+import fr.hd3d.colortribe.color.recycle.ColorSet;
 import fr.hd3d.colortribe.color.type.Point2f;
 import fr.hd3d.colortribe.color.type.Point3f;
+import fr.hd3d.colortribe.core.target.ITarget;
 
 
 public class MeasuresSet
 {
-    private Map<Color, ColorMeasure> _measures = new HashMap<Color, ColorMeasure>();
+    /**
+     * Immutable state of a measures set. A new snapshot is published on every change, with a greater version : readers
+     * get a consistent view without locking or copying, and derived data can be kept until the version changes.
+     */
+    public static final class Snapshot
+    {
+        private final long _version;
+        private final Map<Color, ColorMeasure> _measures;
+        private final List<ColorMeasure> _measureList;
+        // ramps indexed by level, black belongs to every ramp
+        private final Ramp _red;
+        private final Ramp _green;
+        private final Ramp _blue;
+        private final Ramp _gray;
+
+        private Snapshot(long version, Map<Color, ColorMeasure> measures, Ramp red, Ramp green, Ramp blue, Ramp gray)
+        {
+            _version = version;
+            _measures = Collections.unmodifiableMap(measures);
+            _measureList = Collections.unmodifiableList(new ArrayList<ColorMeasure>(measures.values()));
+            _red = red;
+            _green = green;
+            _blue = blue;
+            _gray = gray;
+        }
+
+        public long getVersion()
+        {
+            return _version;
+        }
+
+        public ColorMeasure getMeasure(Color patch)
+        {
+            return _measures.get(patch);
+        }
+
+        /**
+         * @return all the measures, read-only.
+         */
+        public List<ColorMeasure> getMeasures()
+        {
+            return _measureList;
+        }
+
+        public List<ColorMeasure> getRedSortedMesures()
+        {
+            return _red._sorted;
+        }
+
+        public List<ColorMeasure> getGreenSortedMesures()
+        {
+            return _green._sorted;
+        }
+
+        public List<ColorMeasure> getBlueSortedMesures()
+        {
+            return _blue._sorted;
+        }
+
+        public List<ColorMeasure> getGraySortedMesures()
+        {
+            return _gray._sorted;
+        }
+    }
+
+    /**
+     * Read-only ramp index with its sorted list. Unchanged ramps are shared between snapshots.
+     */
+    private static final class Ramp
+    {
+        private static final Ramp EMPTY = new Ramp(new TreeMap<Integer, ColorMeasure>());
+
+        private final NavigableMap<Integer, ColorMeasure> _levels;
+        private final List<ColorMeasure> _sorted;
+
+        private Ramp(TreeMap<Integer, ColorMeasure> levels)
+        {
+            _levels = Collections.unmodifiableNavigableMap(levels);
+            _sorted = Collections.unmodifiableList(new ArrayList<ColorMeasure>(levels.values()));
+        }
+
+        private Ramp with(int level, ColorMeasure measure)
+        {
+            TreeMap<Integer, ColorMeasure> levels = new TreeMap<Integer, ColorMeasure>(_levels);
+            levels.put(level, measure);
+            return new Ramp(levels);
+        }
+    }
+
+    private volatile Snapshot _snapshot = new Snapshot(0, new HashMap<Color, ColorMeasure>(), Ramp.EMPTY, Ramp.EMPTY,
+            Ramp.EMPTY, Ramp.EMPTY);
 
     public boolean mesureThisColor(MeasuresSet currentMeasuresSet, Color c, String label)
     {
@@ -25,11 +121,42 @@ public class MeasuresSet
     }
 
     public boolean mesureThisColor(MeasuresSet currentMeasuresSet, Color c, String label, boolean isPatch)
+    {
+        // System.out.println("Measure color : " + c);
+        return waitForMeasure(ColorMeasureManager._instance.submitPatch(currentMeasuresSet, c, label, isPatch));
+    }
+
+    /**
+     * Queue a patch measure in this set without waiting for it. Queued patches are measured one after the other by
+     * the probe worker, so a whole batch can be queued at once.
+     */
+    public CompletableFuture<ColorMeasure> queueMeasure(Color c, String label, boolean isPatch)
+    {
+        return ColorMeasureManager._instance.submitPatch(this, c, label, isPatch);
+    }
+
+    /**
+     * Drop the measures queued in this set which haven't been started yet, other sets' ones are kept.
+     */
+    public void cancelQueuedMeasures()
+    {
+        ColorMeasureManager._instance.cancelPendingPatches(this);
+    }
+
+    /**
+     * Wait for a queued measure, reporting errors the same way as {@link #mesureThisColor(MeasuresSet, Color, String)}
+     * 
+     * @return false if the measure failed or was cancelled.
+     */
+    public boolean waitForMeasure(CompletableFuture<ColorMeasure> measure)
     {
         try
         {
-            // System.out.println("Measure color : " + c);
-            ColorMeasureManager._instance.mesurePatch(currentMeasuresSet, c, label, isPatch);
+            ColorMeasureManager.waitFor(measure);
+        }
+        catch (CancellationException e)
+        {
+            return false;
         }
         catch (IOException e)
         {
@@ -45,25 +172,100 @@ public class MeasuresSet
         return true;
     }
 
-    void addMeasure(ColorMeasure measure)
+    synchronized void addMeasure(ColorMeasure measure)
+    {
+        Snapshot current = _snapshot;
+        Map<Color, ColorMeasure> measures = new HashMap<Color, ColorMeasure>(current._measures);
+        measures.put(measure.getPatchColor(), measure);
+        Color color = measure.getPatchColor();
+        _snapshot = new Snapshot(current._version + 1, measures, isRed(color) ? current._red.with(color.getRed(),
+                measure) : current._red, isGreen(color) ? current._green.with(color.getGreen(), measure)
+                : current._green, isBlue(color) ? current._blue.with(color.getBlue(), measure) : current._blue,
+                isGray(color) ? current._gray.with(color.getRed(), measure) : current._gray);
+        System.out.println("Measure : " + measure + "(" + measures.size() + ")");
+    }
+
+    /**
+     * @return the current state, which won't change.
+     */
+    public Snapshot getSnapshot()
+    {
+        return _snapshot;
+    }
+
+    /**
+     * @return a number increased on every change of this set.
+     */
+    public long getVersion()
     {
-        _measures.put(measure.getPatchColor(), measure);
-        System.out.println("Measure : " + measure + "(" + _measures.size() + ")");
+        return _snapshot._version;
     }
 
     public ColorMeasure getMeasure(Color patch)
     {
-        return _measures.get(patch);
+        return _snapshot.getMeasure(patch);
     }
 
+    /**
+     * @return all the measures, read-only.
+     */
     public List<ColorMeasure> getMeasures()
     {
-        return new ArrayList<ColorMeasure>(_measures.values());
+        return _snapshot.getMeasures();
     }
 
-    public void clear()
+    public synchronized void clear()
     {
-        _measures.clear();
+        _snapshot = new Snapshot(_snapshot._version + 1, new HashMap<Color, ColorMeasure>(), Ramp.EMPTY, Ramp.EMPTY,
+                Ramp.EMPTY, Ramp.EMPTY);
+    }
+
+    /**
+     * Predict the luminance of a patch : scaled from the nearest measured level of the same ramp (gray or pure
+     * channel) with the target gamma, or from the target maximum luminance with Rec. 709 luminance weights.
+     * 
+     * @return the predicted luminance in cd/m2, -1 if there's no target.
+     */
+    public float predictLuminance(Color patch)
+    {
+        ITarget target = ColorHealerModel._instance.getTarget();
+        if (target == null)
+            return -1;
+        float gamma = target.getGamma();
+        int level = Math.max(patch.getRed(), Math.max(patch.getGreen(), patch.getBlue()));
+        if (level == 0)
+            return 0;
+
+        Snapshot snapshot = _snapshot;
+        Ramp ramp = null;
+        if (isGray(patch))
+            ramp = snapshot._gray;
+        else if (isRed(patch))
+            ramp = snapshot._red;
+        else if (isGreen(patch))
+            ramp = snapshot._green;
+        else if (isBlue(patch))
+            ramp = snapshot._blue;
+        if (ramp != null)
+        {
+            Map.Entry<Integer, ColorMeasure> neighbour;
+            Map.Entry<Integer, ColorMeasure> floor = ramp._levels.floorEntry(level);
+            Map.Entry<Integer, ColorMeasure> ceiling = ramp._levels.ceilingEntry(level);
+            if (floor == null || floor.getKey() == 0)
+                neighbour = ceiling;
+            else if (ceiling == null || level - floor.getKey() <= ceiling.getKey() - level)
+                neighbour = floor;
+            else
+                neighbour = ceiling;
+            if (neighbour != null && neighbour.getValue().getValue()._c > 0)
+                return neighbour.getValue().getValue()._c
+                        * (float) Math.pow(level / (float) neighbour.getKey(), gamma);
+        }
+
+        return target.getMaxLum()
+                * (0.2126f * (float) Math.pow(patch.getRed() / 255f, gamma) + 0.7152f
+                        * (float) Math.pow(patch.getGreen() / 255f, gamma) + 0.0722f
+                        * (float) Math.pow(patch.getBlue() / 255f, gamma));
     }
 
     public enum ETableType
@@ -71,92 +273,44 @@ public class MeasuresSet
         RED, GREEN, BLUE, ALL
     };
 
-    private boolean isGreen(ColorMeasure measure)
+    private static boolean isGreen(Color color)
+    {
+        return (color.getBlue() == 0 && color.getRed() == 0);
+    }
+
+    private static boolean isBlue(Color color)
     {
-        return (measure.getPatchColor().getBlue() == 0 && measure.getPatchColor().getRed() == 0);
+        return (color.getRed() == 0 && color.getGreen() == 0);
     }
 
-    private boolean isBlue(ColorMeasure measure)
+    private static boolean isRed(Color color)
     {
-        return (measure.getPatchColor().getRed() == 0 && measure.getPatchColor().getGreen() == 0);
+        return (color.getBlue() == 0 && color.getGreen() == 0);
     }
 
-    private boolean isRed(ColorMeasure measure)
+    private static boolean isGray(Color color)
     {
-        return (measure.getPatchColor().getBlue() == 0 && measure.getPatchColor().getGreen() == 0);
+        return (color.getRed() == color.getGreen() && color.getGreen() == color.getBlue());
     }
 
-    // TODO check isRed
     public List<ColorMeasure> getRedSortedMesures()
     {
-        List<ColorMeasure> red = new ArrayList<ColorMeasure>();
-        for (ColorMeasure measure : _measures.values())
-        {
-            if (isRed(measure))
-            {
-                int i = 0;
-                for (ColorMeasure redMes : red)
-                {
-                    if (measure.getPatchColor().getRed() < redMes.getPatchColor().getRed())
-                    {
-                        red.add(i, measure);
-                        break;
-                    }
-                    i++;
-                }
-                if (i == red.size())
-                    red.add(measure);
-            }
-        }
-        return red;
+        return _snapshot.getRedSortedMesures();
     }
 
     public List<ColorMeasure> getGreenSortedMesures()
     {
-        List<ColorMeasure> green = new ArrayList<ColorMeasure>();
-        for (ColorMeasure measure : _measures.values())
-        {
-            if (isGreen(measure))
-            {
-                int i = 0;
-                for (ColorMeasure greenMes : green)
-                {
-                    if (measure.getPatchColor().getGreen() < greenMes.getPatchColor().getGreen())
-                    {
-                        green.add(i, measure);
-                        break;
-                    }
-                    i++;
-                }
-                if (i == green.size())
-                    green.add(measure);
-            }
-        }
-        return green;
+        return _snapshot.getGreenSortedMesures();
     }
 
     public List<ColorMeasure> getBlueSortedMesures()
     {
-        List<ColorMeasure> blue = new ArrayList<ColorMeasure>();
-        for (ColorMeasure measure : _measures.values())
-        {
-            if (isBlue(measure))
-            {
-                int i = 0;
-                for (ColorMeasure blueMes : blue)
-                {
-                    if (measure.getPatchColor().getBlue() < blueMes.getPatchColor().getBlue())
-                    {
-                        blue.add(i, measure);
-                        break;
-                    }
-                    i++;
-                }
-                if (i == blue.size())
-                    blue.add(measure);
-            }
-        }
-        return blue;
+        return _snapshot.getBlueSortedMesures();
+    }
+
+    public List<ColorMeasure> getGraySortedMesures()
+    {
+        return _snapshot.getGraySortedMesures();
     }
 
     public List<Point2f> computeSortedNormalizedDifferentialsPoints(ETableType type, List<Point2f> samples)
@@ -189,11 +343,10 @@ public class MeasuresSet
             points.add(new Point2f(colorRatio, (measuredValue / targetValue)));
             if (samples != null)
             {
-                ListIterator<Point3f> colorSamples = mes.getSamples();
-                while (colorSamples.hasNext())
+                ColorSet colorSamples = mes.getSampleSet();
+                for (int i = 0; i < colorSamples.size(); i++)
                 {
-                    Point3f sample = colorSamples.next();
-                    samples.add(new Point2f(colorRatio, (sample._c / targetValue)));
+                    samples.add(new Point2f(colorRatio, (colorSamples.getC(i) / targetValue)));
                 }
             }
         }
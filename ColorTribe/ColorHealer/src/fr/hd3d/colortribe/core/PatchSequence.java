@@ -0,0 +1,253 @@
+package fr.hd3d.colortribe.core;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.List;
+
+import fr.hd3d.colortribe.color.util.ColorKernels;
+
+
+/**
+ * Measuring order of a patch list, chosen to keep the jumps between consecutive patches small : slow panels need less
+ * settle time after a small transition than after a dark to bright one.
+ *
+ * The transition cost is the CIELUV distance of the expected colors (gamma 2.2 sRGB display), the lightness part
+ * weighing more than the chroma one. The order is a nearest neighbour path from the darkest patch, improved by 2-opt
+ * moves. Settle time is assumed to grow linearly with the transition cost.
+ */
+public class PatchSequence
+{
+    private static final float DISPLAY_GAMMA = 2.2f;
+    // chroma changes settle faster than lightness ones
+    private static final float CHROMA_WEIGHT = 0.5f;
+    // D65 white u' v'
+    private static final float WHITE_U = 0.19784f;
+    private static final float WHITE_V = 0.46834f;
+    private static final int MAX_2OPT_PASSES = 50;
+
+    private final List<Color> _patches;
+    private final int[] _order;
+    private final float _originalCost;
+    private final float _optimizedCost;
+
+    private final float[] _l;
+    private final float[] _u;
+    private final float[] _v;
+
+    private PatchSequence(List<Color> patches)
+    {
+        _patches = new ArrayList<Color>(patches);
+        int count = _patches.size();
+        _l = new float[count];
+        _u = new float[count];
+        _v = new float[count];
+        computeLuv();
+        int[] identity = new int[count];
+        for (int i = 0; i < count; i++)
+            identity[i] = i;
+        _originalCost = getCost(identity);
+        _order = nearestNeighbourPath();
+        improve(_order);
+        _optimizedCost = getCost(_order);
+    }
+
+    /**
+     * Orders the given patches, the list isn't modified.
+     */
+    public static PatchSequence optimize(List<Color> patches)
+    {
+        return new PatchSequence(patches);
+    }
+
+    public int size()
+    {
+        return _patches.size();
+    }
+
+    /**
+     * @return index in the original list of the i-th patch to measure.
+     */
+    public int getOriginalIndex(int i)
+    {
+        return _order[i];
+    }
+
+    /**
+     * Patches in measuring order.
+     */
+    public List<Color> getOrderedPatches()
+    {
+        List<Color> ordered = new ArrayList<Color>(_order.length);
+        for (int index : _order)
+            ordered.add(_patches.get(index));
+        return ordered;
+    }
+
+    /**
+     * Puts results given in measuring order back in the original patches order.
+     */
+    public <T> List<T> toOriginalOrder(List<T> ordered)
+    {
+        if (ordered.size() != _order.length)
+            throw new IllegalArgumentException("Expected " + _order.length + " results, got " + ordered.size());
+        List<T> original = new ArrayList<T>(_order.length);
+        for (int i = 0; i < _order.length; i++)
+            original.add(null);
+        for (int i = 0; i < _order.length; i++)
+            original.set(_order[i], ordered.get(i));
+        return original;
+    }
+
+    /**
+     * Summed transition cost of the list as it was given.
+     */
+    public float getOriginalCost()
+    {
+        return _originalCost;
+    }
+
+    public float getOptimizedCost()
+    {
+        return _optimizedCost;
+    }
+
+    /**
+     * Predicted share of the settle time saved by the new order, between 0 and 1.
+     */
+    public float getPredictedSaving()
+    {
+        if (_originalCost <= 0)
+            return 0;
+        return Math.max(0, 1 - _optimizedCost / _originalCost);
+    }
+
+    /**
+     * Predicted settle time saved, given the settle time of a unit of transition cost.
+     */
+    public float getPredictedTimeSaving(float secondsPerCost)
+    {
+        return Math.max(0, _originalCost - _optimizedCost) * secondsPerCost;
+    }
+
+    private void computeLuv()
+    {
+        int count = _patches.size();
+        float[] x = new float[count];
+        float[] y = new float[count];
+        float[] z = new float[count];
+        float[] rgb = new float[3];
+        for (int i = 0; i < count; i++)
+        {
+            _patches.get(i).getRGBColorComponents(rgb);
+            x[i] = (float) Math.pow(rgb[0], DISPLAY_GAMMA);
+            y[i] = (float) Math.pow(rgb[1], DISPLAY_GAMMA);
+            z[i] = (float) Math.pow(rgb[2], DISPLAY_GAMMA);
+        }
+        ColorKernels.rgbD65ToXYZ(x, y, z, x, y, z, count);
+        for (int i = 0; i < count; i++)
+        {
+            float Y = y[i];
+            float l = Y > 0.008856f ? 116 * (float) Math.cbrt(Y) - 16 : 903.3f * Y;
+            float denominator = x[i] + 15 * Y + 3 * z[i];
+            float up = denominator > 0 ? 4 * x[i] / denominator : WHITE_U;
+            float vp = denominator > 0 ? 9 * Y / denominator : WHITE_V;
+            _l[i] = l;
+            _u[i] = 13 * l * (up - WHITE_U);
+            _v[i] = 13 * l * (vp - WHITE_V);
+        }
+    }
+
+    private float cost(int a, int b)
+    {
+        float du = _u[a] - _u[b];
+        float dv = _v[a] - _v[b];
+        return Math.abs(_l[a] - _l[b]) + CHROMA_WEIGHT * (float) Math.sqrt(du * du + dv * dv);
+    }
+
+    private float getCost(int[] order)
+    {
+        float sum = 0;
+        for (int i = 1; i < order.length; i++)
+            sum += cost(order[i - 1], order[i]);
+        return sum;
+    }
+
+    private int[] nearestNeighbourPath()
+    {
+        int count = _patches.size();
+        int[] order = new int[count];
+        if (count == 0)
+            return order;
+        boolean[] used = new boolean[count];
+        int current = 0;
+        for (int i = 1; i < count; i++)
+            if (_l[i] < _l[current])
+                current = i;
+        for (int i = 0; i < count; i++)
+        {
+            order[i] = current;
+            used[current] = true;
+            int next = -1;
+            float nextCost = Float.MAX_VALUE;
+            for (int candidate = 0; candidate < count; candidate++)
+            {
+                if (used[candidate])
+                    continue;
+                float c = cost(current, candidate);
+                if (c < nextCost)
+                {
+                    nextCost = c;
+                    next = candidate;
+                }
+            }
+            current = next;
+        }
+        return order;
+    }
+
+    /**
+     * 2-opt on an open path : reversing order[i..j] only changes the edges entering i and leaving j.
+     */
+    private void improve(int[] order)
+    {
+        int count = order.length;
+        for (int pass = 0; pass < MAX_2OPT_PASSES; pass++)
+        {
+            boolean improved = false;
+            for (int i = 0; i < count - 1; i++)
+            {
+                for (int j = i + 1; j < count; j++)
+                {
+                    float before = 0, after = 0;
+                    if (i > 0)
+                    {
+                        before += cost(order[i - 1], order[i]);
+                        after += cost(order[i - 1], order[j]);
+                    }
+                    if (j < count - 1)
+                    {
+                        before += cost(order[j], order[j + 1]);
+                        after += cost(order[i], order[j + 1]);
+                    }
+                    if (after < before - 1e-4f)
+                    {
+                        reverse(order, i, j);
+                        improved = true;
+                    }
+                }
+            }
+            if (!improved)
+                return;
+        }
+    }
+
+    private static void reverse(int[] order, int i, int j)
+    {
+        while (i < j)
+        {
+            int tmp = order[i];
+            order[i++] = order[j];
+            order[j--] = tmp;
+        }
+    }
+}
@@ -1,29 +1,53 @@
 package fr.hd3d.colortribe.core.correction;
 
+import java.awt.Color;
 import java.io.BufferedWriter;
 import java.io.IOException;
 import java.util.List;
 
+import fr.hd3d.colortribe.color.ColorMeasure;
+import fr.hd3d.colortribe.color.IRgbPrimary;
+import fr.hd3d.colortribe.color.difference.DeltaE;
+import fr.hd3d.colortribe.color.difference.EDeltaEFormula;
+import fr.hd3d.colortribe.color.difference.Lab;
 import fr.hd3d.colortribe.color.type.Point2f;
 import fr.hd3d.colortribe.color.type.Point3f;
 import fr.hd3d.colortribe.color.util.ColorMath;
+import fr.hd3d.colortribe.color.util.ColorMatrix;
+import fr.hd3d.colortribe.color.util.Primaries;
 import fr.hd3d.colortribe.core.ColorHealerModel;
+import fr.hd3d.colortribe.core.DisplayDevice;
 import fr.hd3d.colortribe.core.MeasuresSet;
+import fr.hd3d.colortribe.core.target.ITarget;
 
 
 abstract public class AbstractCorrection
 {
 
-    public final static int LUT_MAX_VALUE = 255;
-    protected List<Point2f> _redCorrection = null;
-    protected List<Point2f> _greenCorrection = null;
-    protected List<Point2f> _blueCorrection = null;
+    public final static int DEFAULT_LUT_SIZE = 256;
+    // corrected value of each LUT entry, entry i stands for i / (size - 1)
+    protected float[] _redCorrection = null;
+    protected float[] _greenCorrection = null;
+    protected float[] _blueCorrection = null;
+    // CIEDE2000 of the validation measures, see computeValidationDeltaE
+    protected float[] _validationDeltaE = null;
 
     public AbstractCorrection()
     {
 
     }
 
+    /**
+     * LUT size of the current display device.
+     */
+    public static int getLutSize()
+    {
+        DisplayDevice device = ColorHealerModel._instance.getDisplayDevice();
+        if (device == null)
+            return DEFAULT_LUT_SIZE;
+        return device.getLutSize();
+    }
+
     abstract public void computeColorCorrection();
 
     abstract public Point3f getDelta();
@@ -36,6 +60,68 @@ abstract public class AbstractCorrection
 
     abstract public Point3f getCalibratedGamma();
 
+    /**
+     * CIEDE2000 of each validation measure from the target, in the validation set order, null before validation.
+     */
+    public float[] getValidationDeltaE()
+    {
+        return _validationDeltaE;
+    }
+
+    /**
+     * CIEDE2000 of each measure of the set from what the target display would show : target primaries, white and
+     * gamma, scaled to the measured white patch (the target max luminance if it wasn't measured).
+     */
+    protected static float[] computeValidationDeltaE(MeasuresSet set)
+    {
+        ITarget target = ColorHealerModel._instance.getTarget();
+        List<ColorMeasure> measures = set.getMeasures();
+        int count = measures.size();
+
+        IRgbPrimary primaries = target.getPrimaries();
+        Point2f white = target.getColorTemp().getxyCoordinates();
+        ColorMatrix toXYZ = new ColorMatrix();
+        toXYZ.setup_CIEXYZtoRGB(new Primaries("target", primaries.getRed().getxyCoordinates(), primaries.getGreen()
+                .getxyCoordinates(), primaries.getBlue().getxyCoordinates()), white);
+        toXYZ.invert();
+        float whiteLum = target.getMaxLum();
+        ColorMeasure whiteMeasure = set.getMeasure(Color.white);
+        if (whiteMeasure != null && whiteMeasure.getValue()._c > 0)
+            whiteLum = whiteMeasure.getValue()._c;
+        float gamma = target.getGamma();
+
+        // measured xyY, then target XYZ, both turned into Lab in place
+        float[] measuredL = new float[count];
+        float[] measuredA = new float[count];
+        float[] measuredB = new float[count];
+        float[] targetL = new float[count];
+        float[] targetA = new float[count];
+        float[] targetB = new float[count];
+        float[] rgb = new float[3];
+        for (int i = 0; i < count; i++)
+        {
+            ColorMeasure measure = measures.get(i);
+            Point3f value = measure.getValue();
+            measuredL[i] = value._a;
+            measuredA[i] = value._b;
+            measuredB[i] = value._c;
+            measure.getPatchColor().getRGBColorComponents(rgb);
+            Point3f xyz = toXYZ.transform((float) Math.pow(rgb[0], gamma), (float) Math.pow(rgb[1], gamma),
+                    (float) Math.pow(rgb[2], gamma));
+            targetL[i] = xyz._a * whiteLum;
+            targetA[i] = xyz._b * whiteLum;
+            targetB[i] = xyz._c * whiteLum;
+        }
+        Lab.fromxyY(measuredL, measuredA, measuredB, white._a, white._b, whiteLum, measuredL, measuredA, measuredB,
+                count);
+        Lab.fromXYZ(targetL, targetA, targetB, white._a * whiteLum / white._b, whiteLum, (1 - white._a - white._b)
+                * whiteLum / white._b, targetL, targetA, targetB, count);
+        float[] deltaE = new float[count];
+        DeltaE.computeParallel(EDeltaEFormula.CIEDE2000, targetL, targetA, targetB, measuredL, measuredA, measuredB,
+                deltaE, count);
+        return deltaE;
+    }
+
     public boolean sendLut()
     {
         if (_redCorrection != null)
@@ -61,11 +147,11 @@ abstract public class AbstractCorrection
     {
         try
         {
-            int size = _redCorrection.size();
+            int size = _redCorrection.length;
             for (int i = 0; i < size; i++)
             {
-                int[] color = ColorMath.floatColorToUShortColor(_redCorrection.get(i)._b, _greenCorrection.get(i)._b,
-                        _blueCorrection.get(i)._b);
+                int[] color = ColorMath.floatColorToUShortColor(_redCorrection[i], _greenCorrection[i],
+                        _blueCorrection[i]);
                 String s = i + "\t" + color[0] + "\t" + color[1] + "\t" + color[2] + "\n";
                 sortie.append(s);
             }
@@ -76,17 +162,17 @@ abstract public class AbstractCorrection
         }
     }
 
-    public List<Point2f> getRedCorrection()
+    public float[] getRedCorrection()
     {
         return _redCorrection;
     }
 
-    public List<Point2f> getBlueCorrection()
+    public float[] getBlueCorrection()
     {
         return _blueCorrection;
     }
 
-    public List<Point2f> getGreenCorrection()
+    public float[] getGreenCorrection()
     {
         return _greenCorrection;
     }
@@ -0,0 +1,304 @@
+package fr.hd3d.colortribe.core.correction;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+
+import fr.hd3d.colortribe.color.ColorMeasure;
+import fr.hd3d.colortribe.color.type.Point3f;
+
+
+/**
+ * Chooses the gamma ramp patches to measure among a candidate list, measuring only where the tone curve is still
+ * uncertain.
+ *
+ * Each channel starts with a few evenly spread candidate levels. The channel response is then fitted with the
+ * {@link GammaFitter} of {@link ENSLLColorCorrection}, the curve going through the end measures, and the next level is
+ * the candidate where the curve is the least known : next to measures deviating from the model more than their noise
+ * (the curve bends there), or where the fitted model's predictive error is the largest. A channel is done once the
+ * expected LUT error, and the deviation left between measures, are below the tolerance. Patches which aren't pure
+ * channel levels are measured in the first round.
+ *
+ * Channels are planned independently : a channel gets its next patch as soon as its previous measures are given back,
+ * so the other channels keep the probe busy meanwhile.
+ */
+public class AdaptivePatchPlanner
+{
+    private static final int RED = 0, GREEN = 1, BLUE = 2;
+    private static final int FIT_ITERATIONS = 4;
+    // levels measured first in each channel, evenly spread : the model has 3 parameters, 2 are left to see the noise
+    private static final int ANCHORS = 5;
+
+    private final float _tolerance;
+    private final float _minFitGamma;
+    private final float _maxFitGamma;
+    private final List<Color> _others = new ArrayList<Color>();
+    private final List<Channel> _channels = new ArrayList<Channel>(3);
+    private boolean _isStarted = false;
+
+    /**
+     * Candidate levels of a channel, and the measured ones.
+     */
+    private class Channel
+    {
+        // level -> patch
+        private final TreeMap<Float, Color> _candidates = new TreeMap<Float, Color>();
+        // level -> measured channel value and its noise
+        private final TreeMap<Float, float[]> _measured = new TreeMap<Float, float[]>();
+        private final List<Float> _pending = new ArrayList<Float>();
+        private float _gamma;
+        private float _first;
+        private float _range;
+        private float _expectedError = Float.MAX_VALUE;
+        private boolean _isDone = false;
+
+        private float model(float level)
+        {
+            return _first + (float) Math.pow(level, _gamma) * _range;
+        }
+
+        private float residual(Float level)
+        {
+            return _measured.get(level)[0] - model(level);
+        }
+
+        /**
+         * Residual beyond the measure noise, relative to the range.
+         */
+        private float significantResidual(Float level)
+        {
+            float[] measured = _measured.get(level);
+            return Math.max(0, Math.abs(residual(level)) - measured[1]) / Math.abs(_range);
+        }
+
+        private void fit()
+        {
+            int n = _measured.size();
+            float[] levels = new float[n];
+            float[] values = new float[n];
+            int i = 0;
+            for (Float level : _measured.keySet())
+            {
+                levels[i] = level;
+                values[i++] = _measured.get(level)[0];
+            }
+            // offset and scale of the model go through the end measures, which depend on the gamma
+            _gamma = 1;
+            for (int iteration = 0; iteration < FIT_ITERATIONS; iteration++)
+            {
+                float low = (float) Math.pow(levels[0], _gamma);
+                float high = (float) Math.pow(levels[n - 1], _gamma);
+                _range = high > low ? (values[n - 1] - values[0]) / (high - low) : 0;
+                _first = values[0] - low * _range;
+                _gamma = new GammaFitter(levels, values, _first, _range).fit(_minFitGamma, _maxFitGamma);
+            }
+            if (_range == 0)
+            {
+                _expectedError = 0;
+                return;
+            }
+            // gamma standard error from the residuals, the end measures are pinned
+            double ssr = 0, sensitivity = 0;
+            for (Float level : _measured.keySet())
+            {
+                double r = residual(level);
+                ssr += r * r;
+                double d = _range * Math.pow(level, _gamma) * Math.log(level);
+                sensitivity += d * d;
+            }
+            double gammaError = sensitivity > 0 ? Math.sqrt(ssr / Math.max(1, n - 3) / sensitivity) : 0;
+            // LUT = x^(target/gamma) : its error for a gamma error is largest at x = exp(-gamma/target), where it
+            // is gammaError / (e.gamma) whatever the target
+            _expectedError = (float) (gammaError / (Math.E * _gamma));
+        }
+
+        /**
+         * @return the most uncertain candidate level, or null if the channel is known well enough.
+         */
+        private Float next()
+        {
+            fit();
+            Float best = null;
+            float bestScore = 0;
+            float gammaError = _expectedError * (float) Math.E * _gamma;
+            for (Float level : _candidates.keySet())
+            {
+                if (_measured.containsKey(level))
+                    continue;
+                Float below = _measured.lowerKey(level);
+                Float above = _measured.higherKey(level);
+                float bend = 0;
+                if (below != null)
+                    bend = Math.max(bend, significantResidual(below));
+                if (above != null)
+                    bend = Math.max(bend, significantResidual(above));
+                // model error at this level, relative to the range
+                float predictive = (float) (Math.pow(level, _gamma) * Math.abs(Math.log(level))) * gammaError;
+                // favour the middle of the widest gaps on ties
+                float gap = (above != null ? above : 1f) - (below != null ? below : 0f);
+                float score = Math.max(bend, predictive) * (1 + gap);
+                if (best == null || score > bestScore)
+                {
+                    best = level;
+                    bestScore = score;
+                }
+            }
+            if (best == null || (_expectedError < _tolerance && bestScore < _tolerance))
+                return null;
+            return best;
+        }
+    }
+
+    /**
+     * @param candidates
+     *            patches which could be measured, e.g. the content of custom_patches.txt
+     * @param tolerance
+     *            LUT error allowed, in output range units (1/255 is one 8 bit code)
+     */
+    public AdaptivePatchPlanner(List<Color> candidates, float tolerance, float minFitGamma, float maxFitGamma)
+    {
+        _tolerance = tolerance;
+        _minFitGamma = minFitGamma;
+        _maxFitGamma = maxFitGamma;
+        for (int i = 0; i < 3; i++)
+            _channels.add(new Channel());
+        for (Color color : candidates)
+        {
+            int channel = getChannel(color);
+            if (channel < 0)
+                _others.add(color);
+            else
+                _channels.get(channel)._candidates.put(getLevel(color, channel), color);
+        }
+    }
+
+    private static int getChannel(Color color)
+    {
+        int r = color.getRed(), g = color.getGreen(), b = color.getBlue();
+        if (r > 0 && g == 0 && b == 0)
+            return RED;
+        if (g > 0 && r == 0 && b == 0)
+            return GREEN;
+        if (b > 0 && r == 0 && g == 0)
+            return BLUE;
+        return -1;
+    }
+
+    private static float getLevel(Color color, int channel)
+    {
+        if (channel == RED)
+            return color.getRed() / 255f;
+        if (channel == GREEN)
+            return color.getGreen() / 255f;
+        return color.getBlue() / 255f;
+    }
+
+    /**
+     * Same channel values as ENSLLColorCorrection : X for red, Y for green, Z for blue.
+     */
+    private static float getChannelValue(Point3f xyY, int channel)
+    {
+        if (channel == RED)
+            return xyY._a * xyY._c / xyY._b;
+        if (channel == GREEN)
+            return xyY._c;
+        return (1 - xyY._a - xyY._b) * xyY._c / xyY._b;
+    }
+
+    /**
+     * Patches to measure next : the first call gives the anchors of every channel, then each channel whose measures
+     * were all given back gets its next level. Can be asked again after each measure.
+     *
+     * @return the new patches, empty if every channel is done or waiting for measures.
+     */
+    public List<Color> nextPatches()
+    {
+        List<Color> patches = new ArrayList<Color>();
+        if (!_isStarted)
+        {
+            _isStarted = true;
+            patches.addAll(_others);
+            for (Channel channel : _channels)
+            {
+                List<Float> levels = new ArrayList<Float>(channel._candidates.keySet());
+                if (levels.isEmpty())
+                {
+                    channel._isDone = true;
+                    continue;
+                }
+                for (int anchor = 0; anchor < ANCHORS; anchor++)
+                {
+                    Float level = levels.get(Math.round(anchor * (levels.size() - 1) / (float) (ANCHORS - 1)));
+                    if (!channel._pending.contains(level))
+                    {
+                        channel._pending.add(level);
+                        patches.add(channel._candidates.get(level));
+                    }
+                }
+            }
+            return patches;
+        }
+        for (Channel channel : _channels)
+        {
+            if (channel._isDone || !channel._pending.isEmpty())
+                continue;
+            Float level = channel._measured.size() < ANCHORS ? null : channel.next();
+            if (level == null)
+            {
+                channel._isDone = true;
+                continue;
+            }
+            channel._pending.add(level);
+            patches.add(channel._candidates.get(level));
+        }
+        return patches;
+    }
+
+    /**
+     * Gives back the measure of a patch returned by {@link #nextPatches()}.
+     */
+    public void addMeasure(ColorMeasure measure)
+    {
+        int index = getChannel(measure.getPatchColor());
+        if (index < 0)
+            return;
+        Channel channel = _channels.get(index);
+        Float level = getLevel(measure.getPatchColor(), index);
+        if (!channel._pending.remove(level))
+            return;
+        Point3f value = measure.getValue();
+        float channelValue = getChannelValue(value, index);
+        // 95% noise of the mean, Y noise dominates
+        float noise = value._c != 0 ? Math.abs(channelValue * measure.getConfidenceInterval()._c / value._c) : 0;
+        channel._measured.put(level, new float[] { channelValue, noise });
+    }
+
+    /**
+     * Expected LUT error of a channel with the measures so far, in output range units.
+     */
+    public float getExpectedError(int channel)
+    {
+        Channel c = _channels.get(channel);
+        if (c._measured.size() < 2)
+            return Float.MAX_VALUE;
+        c.fit();
+        return c._expectedError;
+    }
+
+    public int getCandidateCount()
+    {
+        int count = _others.size();
+        for (Channel channel : _channels)
+            count += channel._candidates.size();
+        return count;
+    }
+
+    public int getMeasuredCount()
+    {
+        int count = _others.size();
+        for (Channel channel : _channels)
+            count += channel._measured.size();
+        return count;
+    }
+}
@@ -1,10 +1,8 @@
 package fr.hd3d.colortribe.core.correction;
 
-import java.util.ArrayList;
 import java.util.List;
 
 import fr.hd3d.colortribe.color.ColorMeasure;
-import fr.hd3d.colortribe.color.type.Point2f;
 import fr.hd3d.colortribe.color.type.Point3f;
 import fr.hd3d.colortribe.core.ColorHealerModel;
 import fr.hd3d.colortribe.core.MeasuresSet;
@@ -14,10 +12,15 @@ public class ENSLLColorCorrection extends AbstractCorrection
 {
 
     private int _measureSetIndex;
-    private boolean _alreadyCompute = false;
+    // what the curves were computed from, see computeColorCorrection
+    private MeasuresSet _computedSet = null;
+    private long _computedVersion = -1;
+    private float _computedGamma;
     private Point3f _foundGamma;
     private Point3f _corrGamma;
     private Point3f _calibratedGamma = null;
+    private float _minFitGamma = 1f;
+    private float _maxFitGamma = 4f;
 
     public ENSLLColorCorrection(int measureSetIndex)
     {
@@ -58,81 +61,86 @@ public class ENSLLColorCorrection extends AbstractCorrection
         return (1 - value._a - value._b) * value._c / value._b;
     }
 
-    private float computeSAD(List<ColorMeasure> measures, float gamma, float firstValue, float rangeValue, int canal)
+    private float getChannelValue(Point3f value, int canal)
     {
-        float sad = 0, x, target;
-        for (ColorMeasure mes : measures)
-        {
-            x = mes.getFloatXIndex();
-            // target = (float) Math.pow(x, gamma);
-            target = firstValue + (float) Math.pow(x, gamma) * rangeValue;
-            if (canal == 0)
-            {// red
-                sad += Math.abs(getXValue(mes.getValue()) - target);
-            }
-            else if (canal == 1)
-            { // green
-                sad += Math.abs(getYValue(mes.getValue()) - target);
-            }
-            else
-            {// blue
-                sad += Math.abs(getZValue(mes.getValue()) - target);
-            }
-
-        }
-        return sad;
+        if (canal == 0)
+            return getXValue(value);
+        else if (canal == 1)
+            return getYValue(value);
+        else
+            return getZValue(value);
     }
 
     private float getMinGamma(List<ColorMeasure> measures, float gamma, float firstValue, float rangeValue, int canal)
     {
-        float start = 2f;
-        float step = 0.005f;
-        float stop = 3.f;
-        float minGamma = gamma;
-        float minSad = computeSAD(measures, gamma, firstValue, rangeValue, canal);
-        float tmpSad;
+        float[] levels = new float[measures.size()];
+        float[] values = new float[measures.size()];
+        for (int i = 0; i < levels.length; i++)
+        {
+            ColorMeasure mes = measures.get(i);
+            levels[i] = mes.getFloatXIndex();
+            values[i] = getChannelValue(mes.getValue(), canal);
+        }
+        GammaFitter fitter = new GammaFitter(levels, values, firstValue, rangeValue);
+        float minGamma = fitter.fit(_minFitGamma, _maxFitGamma);
+        // keep the target gamma unless the fit is strictly better
+        if (fitter.computeSAD(gamma) <= fitter.computeSAD(minGamma))
+            return gamma;
+        return minGamma;
+    }
 
-        float tmpGamma = start;
-        while (tmpGamma < stop)
+    private static void setIdentity(float[] curve)
+    {
+        float maxIndex = curve.length - 1;
+        for (int j = 0; j < curve.length; j++)
         {
-            tmpSad = computeSAD(measures, tmpGamma, firstValue, rangeValue, canal);
-            if (tmpSad < minSad)
-            {
-                minSad = tmpSad;
-                minGamma = tmpGamma;
-            }
-            tmpGamma += step;
+            curve[j] = j / maxIndex;
         }
+    }
 
-        return minGamma;
+    /**
+     * Range searched for the measured gamma, 1 to 4 by default.
+     */
+    public void setGammaFitRange(float minGamma, float maxGamma)
+    {
+        _minFitGamma = minGamma;
+        _maxFitGamma = maxGamma;
+        _computedSet = null;
     }
 
     @Override
     public void computeColorCorrection()
     {
-        if (!_alreadyCompute || _measureSetIndex == -1)
+        int lutSize = getLutSize();
+        MeasuresSet samplesSet;
+        if (_measureSetIndex == -1)
+            samplesSet = ColorHealerModel._instance.getBasicMeasuresSet();
+        else
+            samplesSet = ColorHealerModel._instance.getMeasuresSet(_measureSetIndex);
+        // curves only depend on the measures, the target gamma and the LUT size
+        MeasuresSet.Snapshot snapshot = samplesSet.getSnapshot();
+        float gamma = ColorHealerModel._instance.getTarget().getGamma();
+        if (samplesSet != _computedSet || snapshot.getVersion() != _computedVersion || gamma != _computedGamma
+                || _redCorrection.length != lutSize)
         {
-            MeasuresSet samplesSet;
-            if (_measureSetIndex == -1)
-                samplesSet = ColorHealerModel._instance.getBasicMeasuresSet();
-            else
-                samplesSet = ColorHealerModel._instance.getMeasuresSet(_measureSetIndex);
-            _redCorrection = new ArrayList<Point2f>();
-            _blueCorrection = new ArrayList<Point2f>();
-            _greenCorrection = new ArrayList<Point2f>();
-            float gamma = ColorHealerModel._instance.getTarget().getGamma();
+            _redCorrection = new float[lutSize];
+            _blueCorrection = new float[lutSize];
+            _greenCorrection = new float[lutSize];
             float firstValue, lastValue;
             // Pour chaque canal
             for (int i = 0; i < 3; i++)
             {
                 //
                 List<ColorMeasure> measures;
-                List<Point2f> whereToAdd;
+                float[] whereToAdd;
                 if (i == 0)
                 {
-                    measures = samplesSet.getRedSortedMesures();
+                    measures = snapshot.getRedSortedMesures();
                     if(measures.size()==0)
+                    {
+                        setIdentity(_redCorrection);
                         continue;
+                    }
                     // System.out.println("------------red
                     // correction-----------------");
                     whereToAdd = _redCorrection;
@@ -141,9 +149,12 @@ public class ENSLLColorCorrection extends AbstractCorrection
                 }
                 else if (i == 1)
                 {
-                    measures = samplesSet.getGreenSortedMesures();
+                    measures = snapshot.getGreenSortedMesures();
                     if(measures.size()==0)
+                    {
+                        setIdentity(_greenCorrection);
                         continue;
+                    }
                     // System.out.println("------------green
                     // correction-----------------");
                     whereToAdd = _greenCorrection;
@@ -152,9 +163,12 @@ public class ENSLLColorCorrection extends AbstractCorrection
                 }
                 else
                 {
-                    measures = samplesSet.getBlueSortedMesures();
+                    measures = snapshot.getBlueSortedMesures();
                     if(measures.size()==0)
+                    {
+                        setIdentity(_blueCorrection);
                         continue;
+                    }
                     // System.out.println("------------blue
                     // correction-----------------");
                     whereToAdd = _blueCorrection;
@@ -168,11 +182,10 @@ public class ENSLLColorCorrection extends AbstractCorrection
                 float minGamma = getMinGamma(measures, gamma, firstValue, rangeValue, i);
                 float corrGamma = gamma / minGamma;
 
-                for (int j = 0; j < 256; j++)
+                float maxIndex = lutSize - 1;
+                for (int j = 0; j < lutSize; j++)
                 {
-                    float x = (j) / 255f;
-                    float newX = (float) Math.pow(x, corrGamma);
-                    whereToAdd.add(new Point2f(x, newX));
+                    whereToAdd[j] = (float) Math.pow(j / maxIndex, corrGamma);
                 }
 
                 if (i == 0)
@@ -192,7 +205,9 @@ public class ENSLLColorCorrection extends AbstractCorrection
                 }
 
             }
-            _alreadyCompute = true;
+            _computedSet = samplesSet;
+            _computedVersion = snapshot.getVersion();
+            _computedGamma = gamma;
         }
 
     }
@@ -226,6 +241,7 @@ public class ENSLLColorCorrection extends AbstractCorrection
         float firstValue, lastValue;
         float gamma = ColorHealerModel._instance.getTarget().getGamma();
         float redGamma = 0, greenGamma = 0, blueGamma = 0;
+        _validationDeltaE = computeValidationDeltaE(set);
         for (int i = 0; i < 3; i++)
         {
             //
@@ -0,0 +1,100 @@
+package fr.hd3d.colortribe.core.correction;
+
+/**
+ * Finds the gamma minimizing the sum of absolute differences between measured values and
+ * <code>first + x^gamma * range</code>.
+ * 
+ * Logarithms of the levels are computed once, then a coarse scan of the gamma range brackets the minimum which is
+ * refined by a golden-section search.
+ */
+class GammaFitter
+{
+    private static final int SCAN_STEPS = 30;
+    private static final double TOLERANCE = 1e-4;
+    private static final double INV_PHI = (Math.sqrt(5) - 1) / 2;
+
+    private final double[] _logLevels;
+    private final double[] _values;
+    private final double _firstValue;
+    private final double _rangeValue;
+
+    /**
+     * @param levels
+     *            normalized patch levels, in [0, 1]
+     * @param values
+     *            measured values of the patches
+     */
+    GammaFitter(float[] levels, float[] values, float firstValue, float rangeValue)
+    {
+        _logLevels = new double[levels.length];
+        _values = new double[values.length];
+        for (int i = 0; i < levels.length; i++)
+        {
+            _logLevels[i] = Math.log(levels[i]);
+            _values[i] = values[i];
+        }
+        _firstValue = firstValue;
+        _rangeValue = rangeValue;
+    }
+
+    double computeSAD(double gamma)
+    {
+        double sad = 0;
+        for (int i = 0; i < _logLevels.length; i++)
+        {
+            // exp(-infinity) is 0 for the black level
+            sad += Math.abs(_firstValue + Math.exp(gamma * _logLevels[i]) * _rangeValue - _values[i]);
+        }
+        return sad;
+    }
+
+    /**
+     * @return the best gamma in [minGamma, maxGamma]
+     */
+    float fit(float minGamma, float maxGamma)
+    {
+        double step = (maxGamma - minGamma) / (double) SCAN_STEPS;
+        double best = minGamma;
+        double bestSad = computeSAD(best);
+        for (int i = 1; i <= SCAN_STEPS; i++)
+        {
+            double gamma = minGamma + i * step;
+            double sad = computeSAD(gamma);
+            if (sad < bestSad)
+            {
+                bestSad = sad;
+                best = gamma;
+            }
+        }
+
+        double low = Math.max(minGamma, best - step);
+        double high = Math.min(maxGamma, best + step);
+        double left = high - INV_PHI * (high - low);
+        double right = low + INV_PHI * (high - low);
+        double leftSad = computeSAD(left);
+        double rightSad = computeSAD(right);
+        while (high - low > TOLERANCE)
+        {
+            if (leftSad < rightSad)
+            {
+                high = right;
+                right = left;
+                rightSad = leftSad;
+                left = high - INV_PHI * (high - low);
+                leftSad = computeSAD(left);
+            }
+            else
+            {
+                low = left;
+                left = right;
+                leftSad = rightSad;
+                right = low + INV_PHI * (high - low);
+                rightSad = computeSAD(right);
+            }
+        }
+        double refined = (low + high) / 2;
+        if (computeSAD(refined) < bestSad)
+            best = refined;
+        return (float) best;
+    }
+}
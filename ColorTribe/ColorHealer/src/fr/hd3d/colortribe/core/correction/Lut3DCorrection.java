@@ -0,0 +1,339 @@
+package fr.hd3d.colortribe.core.correction;
+
+import java.awt.Color;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import fr.hd3d.colortribe.color.ColorMeasure;
+import fr.hd3d.colortribe.color.Formulas;
+import fr.hd3d.colortribe.color.IRgbPrimary;
+import fr.hd3d.colortribe.color.type.Matrix3;
+import fr.hd3d.colortribe.color.type.Point2f;
+import fr.hd3d.colortribe.color.type.Point3f;
+import fr.hd3d.colortribe.color.util.ColorMatrix;
+import fr.hd3d.colortribe.color.util.InterpolatedCurve;
+import fr.hd3d.colortribe.color.util.Lut3D;
+import fr.hd3d.colortribe.color.util.Primaries;
+import fr.hd3d.colortribe.core.ColorHealerModel;
+import fr.hd3d.colortribe.core.MeasuresSet;
+import fr.hd3d.colortribe.core.target.ITarget;
+
+
+/**
+ * 3D LUT correction, mapping the target RGB to the display RGB giving the same XYZ : unlike the 1D curves it corrects
+ * the primaries, the white and cross channel errors.
+ *
+ * The display is modelled from the measures set : one curve per channel from the red, green and blue ramps, the XYZ of
+ * the full primaries and the black. Other measured patches (grays, mixed colors) give the deviations from that additive
+ * model, which are spread around them and compensated. The target is its primaries and white, the gamma, and the
+ * brightest white the display can give within the target maximum luminance. Out of gamut colors are clipped.
+ *
+ * It is not an {@link AbstractCorrection} and can't be selected as the applied correction : ColorKeeper only loads 1D
+ * curves in the RAMDAC. The LUT is exported for the tools which apply 3D LUTs.
+ */
+public class Lut3DCorrection
+{
+    public static final int DEFAULT_SIZE = 33;
+    // spread of a patch deviation in display RGB, and weight of the "no deviation" prior
+    private static final float DEVIATION_RADIUS = 0.15f;
+    private static final float DEVIATION_PRIOR = 1f;
+    private static final int DEVIATION_ITERATIONS = 2;
+
+    private final int _measureSetIndex;
+    private final int _size;
+    private Lut3D _lut = null;
+    // what the LUT was computed from
+    private MeasuresSet _computedSet = null;
+    private long _computedVersion = -1;
+    private ITarget _computedTarget = null;
+
+    /**
+     * Display model : XYZ = black + M.(curve_r(r), curve_g(g), curve_b(b)).
+     */
+    private static class DisplayModel
+    {
+        private final InterpolatedCurve[] _curves = new InterpolatedCurve[3];
+        private final InterpolatedCurve[] _inverseCurves = new InterpolatedCurve[3];
+        private final Matrix3 _toXYZ = new Matrix3();
+        private final Matrix3 _toLinear = new Matrix3();
+        private final Point3f _black;
+        // deviations from the model : display rgb and XYZ offset of each patch
+        private final float[][] _deviationRgb;
+        private final float[][] _deviationXYZ;
+
+        private DisplayModel(MeasuresSet.Snapshot snapshot)
+        {
+            ColorMeasure black = snapshot.getMeasure(Color.BLACK);
+            _black = black != null ? toXYZ(black) : new Point3f(0, 0, 0);
+            List<List<ColorMeasure>> ramps = new ArrayList<List<ColorMeasure>>(3);
+            ramps.add(snapshot.getRedSortedMesures());
+            ramps.add(snapshot.getGreenSortedMesures());
+            ramps.add(snapshot.getBlueSortedMesures());
+            Point3f[] primaries = new Point3f[3];
+            for (int c = 0; c < 3; c++)
+            {
+                List<ColorMeasure> ramp = ramps.get(c);
+                if (ramp.isEmpty() || ramp.get(ramp.size() - 1).getFloatXIndex() < 1)
+                    throw new IllegalStateException("The full red, green and blue patches must be measured.");
+                primaries[c] = minus(toXYZ(ramp.get(ramp.size() - 1)), _black);
+            }
+            _toXYZ.matrix00 = primaries[0]._a;
+            _toXYZ.matrix01 = primaries[0]._b;
+            _toXYZ.matrix02 = primaries[0]._c;
+            _toXYZ.matrix10 = primaries[1]._a;
+            _toXYZ.matrix11 = primaries[1]._b;
+            _toXYZ.matrix12 = primaries[1]._c;
+            _toXYZ.matrix20 = primaries[2]._a;
+            _toXYZ.matrix21 = primaries[2]._b;
+            _toXYZ.matrix22 = primaries[2]._c;
+            copy(_toXYZ, _toLinear);
+            _toLinear.invert();
+            for (int c = 0; c < 3; c++)
+                buildCurves(c, ramps.get(c), primaries[c]);
+
+            // deviations of the other patches from the additive model
+            List<float[]> rgbs = new ArrayList<float[]>();
+            List<float[]> offsets = new ArrayList<float[]>();
+            for (ColorMeasure measure : snapshot.getMeasures())
+            {
+                Color patch = measure.getPatchColor();
+                int channels = (patch.getRed() > 0 ? 1 : 0) + (patch.getGreen() > 0 ? 1 : 0)
+                        + (patch.getBlue() > 0 ? 1 : 0);
+                if (channels < 2)
+                    continue;
+                float[] rgb = patch.getRGBColorComponents(null);
+                Point3f predicted = predictXYZ(rgb[0], rgb[1], rgb[2]);
+                Point3f measured = toXYZ(measure);
+                rgbs.add(rgb);
+                offsets.add(new float[] { measured._a - predicted._a, measured._b - predicted._b,
+                        measured._c - predicted._c });
+            }
+            _deviationRgb = rgbs.toArray(new float[rgbs.size()][]);
+            _deviationXYZ = offsets.toArray(new float[offsets.size()][]);
+        }
+
+        /**
+         * Channel curve : projection of the ramp XYZ on the full primary, from 0 to 1. Noisy dark levels which don't
+         * increase are dropped so the curve can be inverted.
+         */
+        private void buildCurves(int channel, List<ColorMeasure> ramp, Point3f primary)
+        {
+            InterpolatedCurve curve = new InterpolatedCurve(InterpolatedCurve.EInterpolation.MONOTONE_CUBIC);
+            InterpolatedCurve inverse = new InterpolatedCurve(InterpolatedCurve.EInterpolation.MONOTONE_CUBIC);
+            curve.put(0, 0);
+            inverse.put(0, 0);
+            float norm = dot(primary, primary);
+            float previous = 0;
+            for (ColorMeasure measure : ramp)
+            {
+                float level = measure.getFloatXIndex();
+                float value = level >= 1 ? 1 : dot(minus(toXYZ(measure), _black), primary) / norm;
+                if (value <= previous || (level < 1 && value >= 1))
+                    continue;
+                curve.put(level, value);
+                inverse.put(value, level);
+                previous = value;
+            }
+            curve.freeze();
+            inverse.freeze();
+            _curves[channel] = curve;
+            _inverseCurves[channel] = inverse;
+        }
+
+        private Point3f predictXYZ(float r, float g, float b)
+        {
+            Point3f xyz = _toXYZ.transform(_curves[0].getValue(r), _curves[1].getValue(g), _curves[2].getValue(b));
+            return new Point3f(xyz._a + _black._a, xyz._b + _black._b, xyz._c + _black._c);
+        }
+
+        /**
+         * Spread deviation at a display rgb : gaussian weighted mean of the patch deviations, pulled to 0 far from
+         * them.
+         */
+        private void deviation(float r, float g, float b, float[] out)
+        {
+            out[0] = out[1] = out[2] = 0;
+            float weights = DEVIATION_PRIOR;
+            float scale = -1 / (2 * DEVIATION_RADIUS * DEVIATION_RADIUS);
+            for (int i = 0; i < _deviationRgb.length; i++)
+            {
+                float[] rgb = _deviationRgb[i];
+                float dr = rgb[0] - r, dg = rgb[1] - g, db = rgb[2] - b;
+                float weight = (float) Math.exp((dr * dr + dg * dg + db * db) * scale);
+                out[0] += weight * _deviationXYZ[i][0];
+                out[1] += weight * _deviationXYZ[i][1];
+                out[2] += weight * _deviationXYZ[i][2];
+                weights += weight;
+            }
+            out[0] /= weights;
+            out[1] /= weights;
+            out[2] /= weights;
+        }
+
+        /**
+         * Display rgb giving XYZ, clipped to the display gamut.
+         */
+        private void toDisplay(float X, float Y, float Z, float[] out)
+        {
+            Point3f linear = _toLinear.transform(X - _black._a, Y - _black._b, Z - _black._c);
+            out[0] = _inverseCurves[0].getValue(clamp(linear._a));
+            out[1] = _inverseCurves[1].getValue(clamp(linear._b));
+            out[2] = _inverseCurves[2].getValue(clamp(linear._c));
+        }
+    }
+
+    /**
+     * @param measureSetIndex
+     *            measures set to model the display from, -1 for the basic one
+     * @param size
+     *            entries per axis, see {@link Lut3D#STANDARD_SIZES}
+     */
+    public Lut3DCorrection(int measureSetIndex, int size)
+    {
+        _measureSetIndex = measureSetIndex;
+        _size = size;
+    }
+
+    public int getSize()
+    {
+        return _size;
+    }
+
+    /**
+     * @return the LUT, null until computed.
+     */
+    public Lut3D getLut()
+    {
+        return _lut;
+    }
+
+    public void computeColorCorrection()
+    {
+        MeasuresSet samplesSet;
+        if (_measureSetIndex == -1)
+            samplesSet = ColorHealerModel._instance.getBasicMeasuresSet();
+        else
+            samplesSet = ColorHealerModel._instance.getMeasuresSet(_measureSetIndex);
+        MeasuresSet.Snapshot snapshot = samplesSet.getSnapshot();
+        ITarget target = ColorHealerModel._instance.getTarget();
+        if (_lut != null && samplesSet == _computedSet && snapshot.getVersion() == _computedVersion
+                && target == _computedTarget)
+            return;
+        _lut = build(new DisplayModel(snapshot), target, _size);
+        _computedSet = samplesSet;
+        _computedVersion = snapshot.getVersion();
+        _computedTarget = target;
+    }
+
+    private static Lut3D build(final DisplayModel display, ITarget target, int size)
+    {
+        // target RGB to XYZ, white Y = 1
+        IRgbPrimary primaries = target.getPrimaries();
+        Point2f white = target.getColorTemp().getxyCoordinates();
+        ColorMatrix targetMatrix = new ColorMatrix();
+        targetMatrix.setup_CIEXYZtoRGB(new Primaries("target", primaries.getRed().getxyCoordinates(), primaries
+                .getGreen().getxyCoordinates(), primaries.getBlue().getxyCoordinates()), white);
+        targetMatrix.invert();
+        final Matrix3 targetToXYZ = targetMatrix;
+
+        // brightest target white in the display gamut, within the target luminance
+        Point3f whiteXYZ = Formulas.convertCIExyYtoCIEXYZ(white._a, white._b, 1);
+        Point3f whiteLinear = display._toLinear.transform(whiteXYZ);
+        float maxComponent = Math.max(whiteLinear._a, Math.max(whiteLinear._b, whiteLinear._c));
+        float whiteY = 1 / maxComponent;
+        if (target.getMaxLum() > 0)
+            whiteY = Math.min(whiteY, target.getMaxLum());
+        final float scale = whiteY - display._black._b;
+        final float gamma = target.getGamma();
+
+        return Lut3D.build(size, new Lut3D.IEntryFunction() {
+            public void evaluate(float r, float g, float b, float[] out, float[] deviation)
+            {
+                Point3f xyz = targetToXYZ.transform((float) Math.pow(r, gamma), (float) Math.pow(g, gamma),
+                        (float) Math.pow(b, gamma));
+                float X = display._black._a + xyz._a * scale;
+                float Y = display._black._b + xyz._b * scale;
+                float Z = display._black._c + xyz._c * scale;
+                display.toDisplay(X, Y, Z, out);
+                if (display._deviationRgb.length == 0)
+                    return;
+                // aim off by the deviation expected where we land
+                for (int i = 0; i < DEVIATION_ITERATIONS; i++)
+                {
+                    display.deviation(out[0], out[1], out[2], deviation);
+                    display.toDisplay(X - deviation[0], Y - deviation[1], Z - deviation[2], out);
+                }
+            }
+        });
+    }
+
+    public void saveCube(File file) throws IOException
+    {
+        OutputStream output = new FileOutputStream(file);
+        try
+        {
+            _lut.writeCube(output, "ColorHealer " + _size + "^3 correction");
+        }
+        finally
+        {
+            output.close();
+        }
+    }
+
+    public void saveBinary(File file) throws IOException
+    {
+        OutputStream output = new FileOutputStream(file);
+        try
+        {
+            _lut.writeBinary(output);
+        }
+        finally
+        {
+            output.close();
+        }
+    }
+
+    public String getSummary()
+    {
+        return "3D LUT correction (measure " + _measureSetIndex + ") " + _size + "x" + _size + "x" + _size;
+    }
+
+    private static Point3f toXYZ(ColorMeasure measure)
+    {
+        // the Point3f version converts in place
+        Point3f xyY = measure.getValue();
+        return Formulas.convertCIExyYtoCIEXYZ(xyY._a, xyY._b, xyY._c);
+    }
+
+    private static Point3f minus(Point3f a, Point3f b)
+    {
+        return new Point3f(a._a - b._a, a._b - b._b, a._c - b._c);
+    }
+
+    private static float dot(Point3f a, Point3f b)
+    {
+        return a._a * b._a + a._b * b._b + a._c * b._c;
+    }
+
+    private static void copy(Matrix3 from, Matrix3 to)
+    {
+        to.matrix00 = from.matrix00;
+        to.matrix01 = from.matrix01;
+        to.matrix02 = from.matrix02;
+        to.matrix10 = from.matrix10;
+        to.matrix11 = from.matrix11;
+        to.matrix12 = from.matrix12;
+        to.matrix20 = from.matrix20;
+        to.matrix21 = from.matrix21;
+        to.matrix22 = from.matrix22;
+    }
+
+    private static float clamp(float value)
+    {
+        return value < 0 ? 0 : (value > 1 ? 1 : value);
+    }
+}
@@ -2,8 +2,6 @@ package fr.hd3d.colortribe.core.correction;
 
 import java.awt.Color;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
 
 import fr.hd3d.colortribe.color.Formulas;
 import fr.hd3d.colortribe.color.IRgbPrimary;
@@ -36,17 +34,6 @@ public class WhiteSoftwareCorrection
         // measure white
         Point2f screenWhite = new Point2f(mesWhite._a, mesWhite._b);
 
-        // measured white conversion to XYZ
-        Point3f screen_xyY = new Point3f(screenWhite._a, screenWhite._b, maxValue * mesWhite._c / target.getMaxLum()); // pourrait
-                                                                                                                                // �tre
-                                                                                                                                // juste
-                                                                                                                                // 65535
-        Point3f screen_XYZ = Formulas.convertCIExyYtoCIEXYZ(screen_xyY);
-
-        // ref white conversion to XYZ
-        Point3f target_xyY = new Point3f(targetWhite._a, targetWhite._b, maxValue);
-        Point3f target_XYZ = Formulas.convertCIExyYtoCIEXYZ(target_xyY);
-
         // measured primaries
         Point2f red = new Point2f(mesRed._a, mesRed._b);
         Point2f green = new Point2f(mesGreen._a, mesGreen._b);
@@ -69,41 +56,53 @@ public class WhiteSoftwareCorrection
         recMatrix.setup_CIEXYZtoRGB(recPrim, screenWhite);
 
 
-        Point3f resScreen = new Point3f(maxValue + 1, maxValue + 1, maxValue + 1);
-        int currentY = maxValue + 1;
-        while ((int) resScreen._a > maxValue || (int) resScreen._b > maxValue || (int) resScreen._c > maxValue)
-        {
-            --currentY;
+        Point3f resScreen = getMaxInGamutRGB(screenMatrix, screenWhite._a, screenWhite._b);
+        Point3f resRec = getMaxInGamutRGB(recMatrix, targetWhite._a, targetWhite._b);
 
-            screen_xyY = new Point3f(screenWhite._a, screenWhite._b, currentY);
-            screen_XYZ = Formulas.convertCIExyYtoCIEXYZ(screen_xyY);
+        _redMaxValue = (int) ((resRec._a + resScreen._a) / 2f + 0.5f);
+        _greenMaxValue = (int) ((resRec._b + resScreen._b) / 2f + 0.5f);
+        _blueMaxValue = (int) ((resRec._c + resScreen._c) / 2f + 0.5f);
 
-            resScreen = screenMatrix.transform(screen_XYZ._a, screen_XYZ._b, screen_XYZ._c);
-            // System.out.println(" screen " + res);
-            //			
+    }
 
-        }
-        Point3f resRec = new Point3f(maxValue + 1, maxValue + 1, maxValue + 1);
-        currentY = maxValue + 1;
-        while ((int) resRec._a > maxValue || (int) resRec._b > maxValue || (int) resRec._c > maxValue)
+    /**
+     * RGB of the brightest white of chromaticity (x, y) whose truncated components are all under maxValue, for an
+     * integer Y. RGB is linear in Y so the largest Y is solved per channel, then checked with the float conversions
+     * used to build the correction.
+     */
+    private Point3f getMaxInGamutRGB(ColorMatrix matrix, float x, float y)
+    {
+        // rgb = Y * k
+        double X = x / (double) y;
+        double Z = (1 - x - y) / (double) y;
+        double[] k = { X * matrix.matrix00 + matrix.matrix10 + Z * matrix.matrix20,
+                X * matrix.matrix01 + matrix.matrix11 + Z * matrix.matrix21,
+                X * matrix.matrix02 + matrix.matrix12 + Z * matrix.matrix22 };
+        int currentY = maxValue;
+        for (int i = 0; i < 3; i++)
         {
-            --currentY;
-
-            // System.out.println(" screen " + res);
-            //			
-
-            target_xyY = new Point3f(targetWhite._a, targetWhite._b, currentY);
-            target_XYZ = Formulas.convertCIExyYtoCIEXYZ(target_xyY);
-
-            resRec = recMatrix.transform(target_XYZ._a, target_XYZ._b, target_XYZ._c);
-
-            // System.out.println(" rec " + resRec);
+            if (k[i] > 0)
+                currentY = (int) Math.min(currentY, Math.ceil((maxValue + 1) / k[i]) - 1);
         }
+        currentY = Math.max(currentY, 0);
+        // float rounding may move the limit by one step
+        while (currentY > 0 && !isInGamut(matrix, x, y, currentY))
+            currentY--;
+        while (currentY < maxValue && isInGamut(matrix, x, y, currentY + 1))
+            currentY++;
+        return toRGB(matrix, x, y, currentY);
+    }
 
-        _redMaxValue = (int) ((resRec._a + resScreen._a) / 2f + 0.5f);
-        _greenMaxValue = (int) ((resRec._b + resScreen._b) / 2f + 0.5f);
-        _blueMaxValue = (int) ((resRec._c + resScreen._c) / 2f + 0.5f);
+    private Point3f toRGB(ColorMatrix matrix, float x, float y, int Y)
+    {
+        Point3f XYZ = Formulas.convertCIExyYtoCIEXYZ(x, y, Y);
+        return matrix.transform(XYZ._a, XYZ._b, XYZ._c);
+    }
 
+    private boolean isInGamut(ColorMatrix matrix, float x, float y, int Y)
+    {
+        Point3f rgb = toRGB(matrix, x, y, Y);
+        return (int) rgb._a <= maxValue && (int) rgb._b <= maxValue && (int) rgb._c <= maxValue;
     }
 
     public WhiteSoftwareCorrection(int redMaxValue, int greenMaxValue, int blueMaxValue)
@@ -130,18 +129,26 @@ public class WhiteSoftwareCorrection
     }
 
     public float getValue(int chan, float x)
+    {
+        return x * getGain(chan);
+    }
+
+    /**
+     * The correction of a channel is linear : value = x * gain.
+     */
+    public float getGain(int chan)
     {
         if (chan == 0)
         {
-            return (x * _redMaxValue) / (float) maxValue;
+            return _redMaxValue / (float) maxValue;
         }
         else if (chan == 1)
         {
-            return (x * _greenMaxValue) / (float) maxValue;
+            return _greenMaxValue / (float) maxValue;
         }
         else
         {
-            return (x * _blueMaxValue) / (float) maxValue;
+            return _blueMaxValue / (float) maxValue;
         }
     }
 
@@ -151,15 +158,20 @@ public class WhiteSoftwareCorrection
     {
         try
         {
-            List<Point2f> red = new ArrayList<Point2f>();
-            List<Point2f> green = new ArrayList<Point2f>();
-            List<Point2f> blue = new ArrayList<Point2f>();
-            for (int i = 0; i < 256; i++)
+            int size = AbstractCorrection.getLutSize();
+            float[] red = new float[size];
+            float[] green = new float[size];
+            float[] blue = new float[size];
+            float redGain = getGain(0);
+            float greenGain = getGain(1);
+            float blueGain = getGain(2);
+            float maxIndex = size - 1;
+            for (int i = 0; i < size; i++)
             {
-                float x = i / 255f;
-                red.add(new Point2f(x, getValue(0, x)));
-                green.add(new Point2f(x, getValue(1, x)));
-                blue.add(new Point2f(x, getValue(2, x)));
+                float x = i / maxIndex;
+                red[i] = x * redGain;
+                green[i] = x * greenGain;
+                blue[i] = x * blueGain;
             }
             boolean ret =  ColorHealerModel._instance.getSocketServer().sendLut(red, green, blue, false);
             ColorHealerModel._instance.getSocketServer().displayColor(Color.white, false);
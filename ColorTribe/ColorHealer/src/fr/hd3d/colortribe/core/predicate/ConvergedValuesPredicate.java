@@ -0,0 +1,49 @@
+package fr.hd3d.colortribe.core.predicate;
+
+import fr.hd3d.colortribe.color.ColorMeasure;
+import fr.hd3d.colortribe.color.type.Point3f;
+
+/**
+ * Keep reading until the mean of the samples has converged : the standard error of Y (relative to the mean) and of
+ * x, y must go below the given tolerances. Uses the running statistics of the measure, nothing is rescanned.
+ * 
+ */
+public class ConvergedValuesPredicate extends APredicate {
+    private final ColorMeasure _measure;
+    private final int _minCount;
+    private final int _maxCount;
+    private final float _yTolerance;
+    private final float _xyTolerance;
+
+    /**
+     * @param minCount
+     *            samples always read, at least 2 to estimate the noise
+     * @param maxCount
+     *            samples read at most, whatever the noise
+     * @param yTolerance
+     *            maximum standard error of Y, relative to mean Y
+     * @param xyTolerance
+     *            maximum standard error of x and y
+     */
+    public ConvergedValuesPredicate(ColorMeasure measure, int minCount, int maxCount, float yTolerance,
+            float xyTolerance) {
+        super(measure);
+        _measure = measure;
+        _minCount = Math.max(2, minCount);
+        _maxCount = Math.max(_minCount, maxCount);
+        _yTolerance = yTolerance;
+        _xyTolerance = xyTolerance;
+    }
+
+    public boolean isDone() {
+        int count = _indexy.size();
+        if (count < _minCount)
+            return false;
+        if (count >= _maxCount)
+            return true;
+        Point3f stdDev = _measure.getStdDev();
+        float sqrtCount = (float) Math.sqrt(count);
+        return stdDev._a / sqrtCount <= _xyTolerance && stdDev._b / sqrtCount <= _xyTolerance
+                && stdDev._c / sqrtCount <= _yTolerance * Math.abs(_measure.getValue()._c);
+    }
+}
@@ -1,7 +1,75 @@
 package fr.hd3d.colortribe.core.probes;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import fr.hd3d.colortribe.color.type.Point3f;
+
+
 public abstract class AbstractProbe implements IProbe
 {
-    
-    
+    // runs the asynchronous reads one at a time, created on first use
+    private ExecutorService _asyncReader = null;
+
+    /**
+     * Default settling : nothing, samples are only taken from reads started once the patch is displayed.
+     */
+    public void settle(float expectedLum) throws Exception
+    {}
+
+    public void endPatch()
+    {}
+
+    /**
+     * Default bulk read : one {@link #readXYZ()} per sample. Probes which can stream override it to save the per
+     * sample native call overhead.
+     */
+    public int readXYZ(int count, float[] out) throws Exception
+    {
+        if (count < 0 || out.length < 3 * count)
+            throw new IllegalArgumentException("Buffer of " + out.length + " values, " + 3 * count + " expected.");
+        for (int i = 0; i < count; i++)
+        {
+            Point3f xyz = readXYZ();
+            if (xyz == null)
+                return i;
+            out[3 * i] = xyz._a;
+            out[3 * i + 1] = xyz._b;
+            out[3 * i + 2] = xyz._c;
+        }
+        return count;
+    }
+
+    /**
+     * Default asynchronous read : {@link #readXYZ()} on a reader thread of the probe.
+     */
+    public synchronized CompletableFuture<Point3f> readXYZAsync()
+    {
+        if (_asyncReader == null)
+            _asyncReader = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                public Thread newThread(Runnable runnable)
+                {
+                    Thread thread = new Thread(runnable, getEProbeType().getName() + " reader");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        final CompletableFuture<Point3f> result = new CompletableFuture<Point3f>();
+        _asyncReader.execute(new Runnable() {
+            public void run()
+            {
+                try
+                {
+                    result.complete(readXYZ());
+                }
+                catch (Exception e)
+                {
+                    result.completeExceptionally(e);
+                }
+            }
+        });
+        return result;
+    }
 }
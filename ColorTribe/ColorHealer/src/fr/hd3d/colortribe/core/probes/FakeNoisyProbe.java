@@ -38,6 +38,10 @@ class FakeNoisyProbe extends AbstractProbe
         curveGreen.put(1, 1);
         curveBlue.put(0, 0);
         curveBlue.put(1, 1);
+        noiseCurve.freeze();
+        curveRed.freeze();
+        curveGreen.freeze();
+        curveBlue.freeze();
     }
 
     public void close()
@@ -1,5 +1,7 @@
 package fr.hd3d.colortribe.core.probes;
 
+import java.util.concurrent.CompletableFuture;
+
 import javax.swing.JOptionPane;
 
 import fr.hd3d.colortribe.color.type.Point3f;
@@ -79,10 +81,26 @@ public class GammaProbeAndColorProbe extends AbstractProbe {
 		return true;
 	}
 
+	public void settle(float expectedLum) throws Exception {
+		selectedProbe.settle(expectedLum);
+	}
+
+	public void endPatch() {
+		selectedProbe.endPatch();
+	}
+
 	public Point3f readXYZ() throws Exception {
 		return selectedProbe.readXYZ();
 	}
 
+	public int readXYZ(int count, float[] out) throws Exception {
+		return selectedProbe.readXYZ(count, out);
+	}
+
+	public CompletableFuture<Point3f> readXYZAsync() {
+		return selectedProbe.readXYZAsync();
+	}
+
 	public boolean isOpen() {
 		return isOpen;
 	}
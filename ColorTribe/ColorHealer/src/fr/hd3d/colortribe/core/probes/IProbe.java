@@ -1,5 +1,7 @@
 package fr.hd3d.colortribe.core.probes;
 
+import java.util.concurrent.CompletableFuture;
+
 import fr.hd3d.colortribe.color.type.Point3f;
 
 
@@ -37,7 +39,31 @@ public interface IProbe
     public boolean isOpen() ;
     public boolean open(String comPort) throws Exception;
     public void close();
+    /**
+     * Called once a patch is displayed, before its samples are read.
+     * 
+     * @param expectedLum
+     *            predicted luminance of the patch in cd/m2, negative if unknown.
+     */
+    public void settle(float expectedLum) throws Exception;
+    /**
+     * Called once the samples of the patch given to {@link #settle(float)} are read : the following reads aren't part
+     * of that patch, until the next settle.
+     */
+    public void endPatch();
     public Point3f readXYZ() throws Exception;
+    /**
+     * Reads up to count samples back to back, stored like {@link #readXYZ()} values : out[3 * i], out[3 * i + 1] and
+     * out[3 * i + 2] for the i-th sample.
+     * 
+     * @return the number of samples read, less than count if the probe returned nothing for a sample.
+     */
+    public int readXYZ(int count, float[] out) throws Exception;
+    /**
+     * Reads a sample without blocking the caller. Reads of a probe must not overlap : don't use it while the
+     * {@link SampleGrabber} reads the probe.
+     */
+    public CompletableFuture<Point3f> readXYZAsync();
     public String getProbeDescription();
     public EProbeType getEProbeType();
     public String getSerialInfo();
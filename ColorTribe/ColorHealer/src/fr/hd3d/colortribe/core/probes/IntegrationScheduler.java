@@ -0,0 +1,72 @@
+package fr.hd3d.colortribe.core.probes;
+
+/**
+ * Chooses the Spyder integration time of a patch from its luminance.
+ * 
+ * Datacolor recommends 5 seconds per sample below 4 cd/m2 and 2 seconds above, for typical LCD displays. Bright
+ * patches are read in 1 second, their signal is far above the probe noise. The luminance is predicted from the target
+ * and the neighbour measures, then corrected by a short pre-read.
+ */
+class IntegrationScheduler
+{
+    static final int FRAMES_PER_SECOND = 60;
+
+    private static final float LOW_LUM = 4f;
+    private static final float HIGH_LUM = 40f;
+
+    private static final int LOW_LUM_FRAMES = 5 * FRAMES_PER_SECOND;
+    private static final int DEFAULT_FRAMES = 2 * FRAMES_PER_SECOND;
+    private static final int HIGH_LUM_FRAMES = 1 * FRAMES_PER_SECOND;
+
+    private static final int PRE_READ_FRAMES = FRAMES_PER_SECOND / 4;
+    private static final int DARK_PRE_READ_FRAMES = FRAMES_PER_SECOND / 2;
+
+    private int _frameCount = DEFAULT_FRAMES;
+
+    /**
+     * Frames of the pre-read, a bit longer for patches predicted dark so their estimate isn't only noise.
+     * 
+     * @param predictedLum
+     *            predicted luminance in cd/m2, negative if unknown.
+     */
+    int getPreReadFrameCount(float predictedLum)
+    {
+        if (predictedLum >= 0 && predictedLum < LOW_LUM)
+            return DARK_PRE_READ_FRAMES;
+        return PRE_READ_FRAMES;
+    }
+
+    /**
+     * Set the frame count of the next reads.
+     * 
+     * @param predictedLum
+     *            predicted luminance in cd/m2, negative if unknown.
+     * @param preReadLum
+     *            luminance given by the pre-read, negative if it failed.
+     */
+    void schedule(float predictedLum, float preReadLum)
+    {
+        float lum = preReadLum > 0 ? preReadLum : predictedLum;
+        if (lum < 0)
+            _frameCount = DEFAULT_FRAMES;
+        else if (lum < LOW_LUM)
+            _frameCount = LOW_LUM_FRAMES;
+        else if (lum < HIGH_LUM)
+            _frameCount = DEFAULT_FRAMES;
+        else
+            _frameCount = HIGH_LUM_FRAMES;
+    }
+
+    /**
+     * Back to the default integration time, for reads which are not part of a scheduled patch.
+     */
+    void reset()
+    {
+        _frameCount = DEFAULT_FRAMES;
+    }
+
+    int getFrameCount()
+    {
+        return _frameCount;
+    }
+}
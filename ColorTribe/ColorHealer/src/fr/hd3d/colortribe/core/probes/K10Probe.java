@@ -99,6 +99,26 @@ public class K10Probe extends AbstractProbe
         return new Point3f(x, y, Y);// fff //ciexyY
     }
 
+    /**
+     * Streams samples at the K-10 rate : back to back native reads, without the per read allocations and logging of
+     * readXYZ().
+     */
+    public int readXYZ(int count, float[] out) throws Exception
+    {
+        if (count < 0 || out.length < 3 * count)
+            throw new IllegalArgumentException("Buffer of " + out.length + " values, " + 3 * count + " expected.");
+        float[/* 3 [x,y,z] */] XYZ = new float[3];
+        for (int i = 0; i < count; i++)
+        {
+            JK10.getXYZ(XYZ);
+            float sum = XYZ[0] + XYZ[1] + XYZ[2];
+            out[3 * i] = XYZ[0] / sum;
+            out[3 * i + 1] = XYZ[1] / sum;
+            out[3 * i + 2] = XYZ[1];
+        }
+        return count;
+    }
+
 	public boolean isSpecificCalibrationRequired() {
 		return false;
 	}
@@ -1,20 +1,114 @@
 package fr.hd3d.colortribe.core.probes;
 
-import java.util.HashMap;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import fr.hd3d.colortribe.core.probes.IProbe.EProbeType;
 
 
+/**
+ * Probes plugged on the computer.
+ * 
+ * Discovery runs every driver check at once, each one given {@link #CHECK_TIMEOUT} : a missing or hung device doesn't
+ * delay the others. A check still running from a previous discovery is waited for rather than started again, the
+ * drivers aren't reentrant, and a probe keeps its last known state until its check answers. The probe types found
+ * are saved in {@link #HINT_FILE} : the first list of the next run is returned once those probes are confirmed, the
+ * other checks going on in the background.
+ */
 public class ProbesPool
 {
+    // a driver check answering later is left running in the background
+    private static final long CHECK_TIMEOUT = 8000; // ms
+    // probe types found by the last discovery, one per line
+    private static final String HINT_FILE = "custom_parameters/last_probes.txt";
+    private static final EProbeType[] DRIVERS = { EProbeType.TEST_CURVE_PROBE, EProbeType.SPYDER_3,
+            EProbeType.SPYDER_4, EProbeType.MK_CS200, EProbeType.K10 };
 
-    private static Map<EProbeType, AbstractProbe> _probes = new HashMap<EProbeType, AbstractProbe>();
+    private final Map<EProbeType, AbstractProbe> _probes = new EnumMap<EProbeType, AbstractProbe>(EProbeType.class);
+    // last check of each driver, running or done
+    private final Map<EProbeType, Future<AbstractProbe>> _checks = new EnumMap<EProbeType, Future<AbstractProbe>>(
+            EProbeType.class);
+    private final Set<EProbeType> _hint;
+    private final ExecutorService _checker = Executors.newCachedThreadPool(new ThreadFactory() {
+        public Thread newThread(Runnable runnable)
+        {
+            Thread thread = new Thread(runnable, "probe check");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+    private CompletableFuture<Set<EProbeType>> _discovery = null;
+    private boolean _hasDiscovered = false;
+
+    /**
+     * Checks a driver, and updates the probes list with its answer.
+     */
+    private class Check implements Callable<AbstractProbe>
+    {
+        private final EProbeType _type;
+
+        private Check(EProbeType type)
+        {
+            _type = type;
+        }
+
+        public AbstractProbe call()
+        {
+            AbstractProbe probe = null;
+            try
+            {
+                if (isConnected(_type))
+                {
+                    synchronized (_probes)
+                    {
+                        probe = _probes.get(_type);
+                    }
+                    if (probe == null)
+                        probe = newProbe(_type);
+                }
+            }
+            catch (Error error)
+            {
+                System.out.println(getErrorMessage(_type, error.getMessage()));
+            }
+            catch (Exception e)
+            {
+                // the driver failed, the probe is taken as gone
+                System.out.println(getErrorMessage(_type, e.getMessage()));
+            }
+            synchronized (_probes)
+            {
+                if (probe != null)
+                    _probes.put(_type, probe);
+                else
+                    _probes.remove(_type);
+            }
+            return probe;
+        }
+    }
 
     public ProbesPool()
     {
-    // sniffProbes();
+        _hint = readHint();
     }
 
     private String getErrorMessage(EProbeType e, String message)
@@ -22,95 +116,231 @@ public class ProbesPool
         return e.toString() + " can't be loaded : " + message;
     }
 
-    private boolean sniffProbes()
+    private static boolean isConnected(EProbeType type)
     {
-//        boolean isSpyderConnected = false;
-//        boolean /*isSpectroConnected*/ = false;
-
-        if (FakeNoisyProbe.isConnected() == true)
+        switch (type)
         {
-            _probes.put(EProbeType.TEST_CURVE_PROBE, new FakeNoisyProbe());
+            case TEST_CURVE_PROBE:
+                return FakeNoisyProbe.isConnected();
+            case SPYDER_3:
+                return Spyder3Probe.isConnected();
+            case SPYDER_4:
+                return Spyder4Probe.isConnected();
+            case MK_CS200:
+                return CS200Probe.isConnected();
+            case K10:
+                return K10Probe.isConnected();
+            default:
+                return false;
         }
+    }
 
-        Spyder3Probe spyder3Probe = null;
-        try
+    private static AbstractProbe newProbe(EProbeType type)
+    {
+        switch (type)
         {
-            if (Spyder3Probe.isConnected() == true)
-            {
-                //isSpyderConnected = true;
-                spyder3Probe = new Spyder3Probe();
-                _probes.put(EProbeType.SPYDER_3, spyder3Probe);
-            }
+            case TEST_CURVE_PROBE:
+                return new FakeNoisyProbe();
+            case SPYDER_3:
+                return new Spyder3Probe();
+            case SPYDER_4:
+                return new Spyder4Probe();
+            case MK_CS200:
+                return new CS200Probe();
+            case K10:
+                return new K10Probe();
+            default:
+                return null;
         }
-        catch (Error error)
+    }
+
+    /**
+     * Starts a discovery in the background, unless one is running.
+     * 
+     * @return the discovery, giving the probe types found.
+     */
+    public synchronized CompletableFuture<Set<EProbeType>> refresh()
+    {
+        if (_discovery != null && !_discovery.isDone())
+            return _discovery;
+        for (EProbeType type : DRIVERS)
         {
-            System.out.println(getErrorMessage(EProbeType.SPYDER_3, error.getMessage()));
+            Future<AbstractProbe> check = _checks.get(type);
+            if (check == null || check.isDone())
+                _checks.put(type, _checker.submit(new Check(type)));
         }
-        
-        try
-        {
-            if (Spyder4Probe.isConnected() == true)
+        final Map<EProbeType, Future<AbstractProbe>> checks = new EnumMap<EProbeType, Future<AbstractProbe>>(_checks);
+        final CompletableFuture<Set<EProbeType>> discovery = new CompletableFuture<Set<EProbeType>>();
+        _discovery = discovery;
+        _checker.execute(new Runnable() {
+            public void run()
             {
-                _probes.put(EProbeType.SPYDER_4, new Spyder4Probe());
+                await(checks, checks.keySet(), true);
+                Set<EProbeType> found = getSnapshot();
+                writeHint(found);
+                synchronized (ProbesPool.this)
+                {
+                    _hasDiscovered = true;
+                }
+                discovery.complete(found);
             }
-        }
-        catch (Error error)
-        {
-            System.out.println(getErrorMessage(EProbeType.SPYDER_4, error.getMessage()));
-        }
-        try
+        });
+        return discovery;
+    }
+
+    /**
+     * The running discovery, or the last one. Starts one if none was.
+     */
+    public synchronized CompletableFuture<Set<EProbeType>> getDiscovery()
+    {
+        if (_discovery == null)
+            return refresh();
+        return _discovery;
+    }
+
+    /**
+     * Waits for the given checks, all of them within CHECK_TIMEOUT.
+     */
+    private void await(Map<EProbeType, Future<AbstractProbe>> checks, Collection<EProbeType> types, boolean isLogged)
+    {
+        long deadline = System.currentTimeMillis() + CHECK_TIMEOUT;
+        for (EProbeType type : types)
         {
-            if (CS200Probe.isConnected() == true)
+            Future<AbstractProbe> check = checks.get(type);
+            if (check == null)
+                continue;
+            try
             {
-                _probes.put(EProbeType.MK_CS200, new CS200Probe());
+                check.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
             }
-        }
-        catch (Error error)
-        {
-            System.out.println(getErrorMessage(EProbeType.MK_CS200, error.getMessage()));
-        }
-        try
-        {
-            if (K10Probe.isConnected() == true)
+            catch (TimeoutException e)
             {
-                _probes.put(EProbeType.K10, new K10Probe());
+                if (isLogged)
+                    System.out.println(getErrorMessage(type, "no answer after " + CHECK_TIMEOUT + " ms"));
+            }
+            catch (ExecutionException e)
+            {
+                if (isLogged)
+                    System.out.println(getErrorMessage(type, String.valueOf(e.getCause())));
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                return;
             }
         }
-        catch (Error error)
-        {
-            System.out.println(getErrorMessage(EProbeType.K10, error.getMessage()));
-        }
-
-//        // Probe couple
-//        if ((ColorHealerModel._instance.getProtocol() instanceof CalibrationProtocol) && isSpyderConnected
-//                && /*isASpectroConnectedS*/)
-//        {
-//            _probes.put(EProbeType.EYEONEPRO_SPYDER3, new GammaProbeAndColorProbe(spyder3Probe, /*spectroProbe*/,
-//                    EProbeType.EYEONEPRO_SPYDER3));
-//        }
-
-        return false;
     }
 
-    private void refreshProbesList()
+    private Set<EProbeType> getSnapshot()
     {
-        _probes.clear();
-        sniffProbes();
+        synchronized (_probes)
+        {
+            if (_probes.isEmpty())
+                return Collections.unmodifiableSet(EnumSet.noneOf(EProbeType.class));
+            return Collections.unmodifiableSet(EnumSet.copyOf(_probes.keySet()));
+        }
     }
 
+    /**
+     * Runs a discovery and waits for it, at most the longest driver check.
+     */
     public Set<EProbeType> getRefreshedProbesList()
     {
-        refreshProbesList();
-        return _probes.keySet();
+        return refresh().join();
     }
 
+    /**
+     * Probes found so far. Before the first discovery ends, waits for the probes found by the last run, or for every
+     * check if there is no such hint.
+     */
     public Set<EProbeType> getProbesList()
     {
-        return _probes.keySet();
+        Map<EProbeType, Future<AbstractProbe>> checks;
+        synchronized (this)
+        {
+            if (_hasDiscovered)
+                return getSnapshot();
+            getDiscovery();
+            checks = new EnumMap<EProbeType, Future<AbstractProbe>>(_checks);
+        }
+        await(checks, _hint.isEmpty() ? checks.keySet() : _hint, false);
+        return getSnapshot();
     }
 
     public AbstractProbe getProbe(EProbeType probeType)
     {
-        return _probes.get(probeType);
+        synchronized (_probes)
+        {
+            return _probes.get(probeType);
+        }
+    }
+
+    private static Set<EProbeType> readHint()
+    {
+        Set<EProbeType> hint = EnumSet.noneOf(EProbeType.class);
+        File file = new File(HINT_FILE);
+        if (!file.exists())
+            return hint;
+        BufferedReader reader = null;
+        try
+        {
+            reader = new BufferedReader(new FileReader(file));
+            String line;
+            while ((line = reader.readLine()) != null)
+            {
+                try
+                {
+                    hint.add(EProbeType.valueOf(line.trim()));
+                }
+                catch (IllegalArgumentException e)
+                {
+                    // probe type of another version
+                }
+            }
+        }
+        catch (IOException e)
+        {
+            System.out.println("Can't read " + HINT_FILE + " : " + e.getMessage());
+        }
+        finally
+        {
+            if (reader != null)
+                try
+                {
+                    reader.close();
+                }
+                catch (IOException e)
+                {
+                    e.printStackTrace();
+                }
+        }
+        return hint;
+    }
+
+    private static void writeHint(Set<EProbeType> found)
+    {
+        BufferedWriter writer = null;
+        try
+        {
+            writer = new BufferedWriter(new FileWriter(HINT_FILE));
+            for (EProbeType type : found)
+                writer.write(type.name() + "\n");
+        }
+        catch (IOException e)
+        {
+            System.out.println("Can't write " + HINT_FILE + " : " + e.getMessage());
+        }
+        finally
+        {
+            if (writer != null)
+                try
+                {
+                    writer.close();
+                }
+                catch (IOException e)
+                {
+                    e.printStackTrace();
+                }
+        }
     }
 }
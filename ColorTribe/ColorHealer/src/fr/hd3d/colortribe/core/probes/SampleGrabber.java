@@ -1,79 +1,217 @@
 package fr.hd3d.colortribe.core.probes;
 
-import java.util.ConcurrentModificationException;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 import java.util.logging.Logger;
 
-import javax.swing.JOptionPane;
-
+import fr.hd3d.colortribe.color.type.Point3f;
 import fr.hd3d.colortribe.core.ColorHealerModel;
 import fr.hd3d.colortribe.core.probes.IProbe.EProbeType;
 
 
+/**
+ * Streaming sampler : a single long-lived thread owns the selected probe and reads it back to back while someone waits
+ * for a sample, publishing timestamped samples into a {@link SampleRing}. A read serves every waiting consumer.
+ * 
+ * Samples are read in batches through {@link IProbe#readXYZ(int, float[])}, sized from the measured read time so that
+ * a batch lasts about {@link #BATCH_DURATION} : slow probes are read one sample at a time, fast ones stream. Samples of
+ * a batch get evenly spread read times.
+ * 
+ * Consumers subscribe with a time window : they only get samples whose read started after a given time, e.g. once a
+ * patch is displayed, so no read has to be thrown away to skip the previous patch. Other probe calls (settling) are
+ * run on the sampler thread between two reads.
+ */
 public class SampleGrabber
 {
     private final static Logger LOGGER = Logger.getLogger(SampleGrabber.class.getSimpleName());
-    private IProbe _probe = null;
+    private static final int RING_CAPACITY = 64;
+    private static final long BATCH_DURATION = 50000000L; // ns
+    private static final int MAX_BATCH = 32;
     private static SampleGrabber _instance;
+
+    private final SampleRing _ring = new SampleRing(RING_CAPACITY);
+    private final Object _lock = new Object();
+    private final Queue<FutureTask<?>> _commands = new ArrayDeque<FutureTask<?>>();
+    private final CopyOnWriteArrayList<ISampleListener> _listeners = new CopyOnWriteArrayList<ISampleListener>();
+    // consumers blocked in take()
+    private int _waitingCount = 0;
     private Thread _thread;
-    private final SamplesRunnable _runnable = new SamplesRunnable();
-    private final Object stopLock = new Object();
-    private final Object startLock = new Object();
-    private Thread currentThreadOwner = null;
 
-    private class SamplesRunnable implements Runnable
+    /**
+     * Samples read after a given time, in publication order.
+     */
+    public class Subscription
     {
-        private boolean stop;
-        private ISampleListener listener;
+        private final long _after;
+        private long _next;
+        private volatile boolean _isClosed = false;
 
-        public void run()
+        private Subscription(long after)
         {
-            stop = false;
-            try
+            _after = after;
+            _next = _ring.getTail();
+        }
+
+        /**
+         * Waits for the next sample whose read started after the subscription time.
+         * 
+         * @return the read value, may be null if the probe returned nothing. Don't modify.
+         * @throws Exception
+         *             the error of the read.
+         */
+        public Point3f take() throws Exception
+        {
+            return poll(-1);
+        }
+
+        /**
+         * Same as {@link #take()}, but gives up after a while.
+         * 
+         * @param timeoutMillis
+         *            longest wait, negative to wait for ever
+         * @return the read value, null if the probe returned nothing or no sample came in time.
+         */
+        public Point3f poll(long timeoutMillis) throws Exception
+        {
+            long deadline = System.nanoTime() + timeoutMillis * 1000000L;
+            while (true)
             {
-                _probe.readXYZ();
-                while (!stop)
+                if (_isClosed)
+                    throw new IllegalStateException("Subscription is closed.");
+                if (_next < _ring.getTail())
                 {
-                    if (listener != null)
-                        checkProbe();
-                    listener.measureDone(_probe.readXYZ());
+                    LOGGER.warning((_ring.getTail() - _next) + " samples overwritten before being read.");
+                    _next = _ring.getTail();
                 }
+                SampleRing.Sample sample = _ring.get(_next);
+                if (sample == null)
+                {
+                    long remaining = (deadline - System.nanoTime()) / 1000000L;
+                    if (timeoutMillis >= 0 && remaining <= 0)
+                        return null;
+                    synchronized (_lock)
+                    {
+                        if (_next >= _ring.getHead())
+                        {
+                            _waitingCount++;
+                            _lock.notifyAll();
+                            try
+                            {
+                                _lock.wait(timeoutMillis >= 0 ? remaining : 0);
+                            }
+                            finally
+                            {
+                                _waitingCount--;
+                            }
+                        }
+                    }
+                    continue;
+                }
+                _next++;
+                if (sample.getReadStart() - _after < 0)
+                    continue;
+                if (sample.getError() != null)
+                    throw sample.getError();
+                return sample.getXYZ();
             }
-            catch (Exception e)
-            {
-                LOGGER.warning(e.getMessage());
-                JOptionPane.showMessageDialog(null, e.getMessage(), "Probe error", JOptionPane.ERROR_MESSAGE);
-            }
-            finally
-            {
-                listener = null;
-            }
-        }
-
-        public void stop()
-        {
-            stop = true;
         }
 
-        public void setListener(ISampleListener listener)
+        public void close()
         {
-            this.listener = listener;
+            _isClosed = true;
         }
     }
 
-    private SampleGrabber()
+    private class SamplerRunnable implements Runnable
     {
-        if (_probe == null)
-        {
-            EProbeType probeType = ColorHealerModel._instance.getProbe().getEProbeType();
+        private final float[] _batch = new float[3 * MAX_BATCH];
+        private int _batchSize = 1;
+        // probe the batch size was measured with
+        private IProbe _batchProbe = null;
 
-            if (probeType != null)
+        public void run()
+        {
+            while (true)
             {
-                setProbe(ColorHealerModel._instance.getProbesPool().getProbe(probeType));
+                FutureTask<?> command;
+                synchronized (_lock)
+                {
+                    try
+                    {
+                        while (_commands.isEmpty() && _waitingCount == 0 && _listeners.isEmpty())
+                            _lock.wait();
+                    }
+                    catch (InterruptedException e)
+                    {
+                        return;
+                    }
+                    command = _commands.poll();
+                }
+                if (command != null)
+                {
+                    command.run();
+                    continue;
+                }
+                readSample();
             }
+        }
 
+        private void readSample()
+        {
+            int count = 0;
+            Exception error = null;
+            long readStart = System.nanoTime();
+            try
+            {
+                IProbe probe = getProbe();
+                if (probe != _batchProbe)
+                {
+                    _batchProbe = probe;
+                    _batchSize = 1;
+                }
+                count = probe.readXYZ(_batchSize, _batch);
+            }
+            catch (Exception e)
+            {
+                LOGGER.warning(e.getMessage());
+                error = e;
+            }
+            long readEnd = System.nanoTime();
+            // a missing sample is published as null, like before batches
+            int published = error != null || count < _batchSize ? count + 1 : count;
+            long readTime = (readEnd - readStart) / published;
+            Point3f[] samples = new Point3f[published];
+            synchronized (_lock)
+            {
+                for (int i = 0; i < published; i++)
+                {
+                    if (i < count)
+                        samples[i] = new Point3f(_batch[3 * i], _batch[3 * i + 1], _batch[3 * i + 2]);
+                    _ring.publish(samples[i], i < count ? null : error, readStart + i * readTime, readStart + (i + 1)
+                            * readTime);
+                }
+                _lock.notifyAll();
+            }
+            if (error == null)
+            {
+                _batchSize = (int) Math.max(1, Math.min(MAX_BATCH, BATCH_DURATION / Math.max(1, readTime)));
+                for (Point3f xyz : samples)
+                    for (ISampleListener listener : _listeners)
+                        listener.measureDone(xyz);
+            }
+            else
+                // no subscriber will stop a failing probe
+                _listeners.clear();
         }
     }
 
+    private SampleGrabber()
+    {}
+
     synchronized static public SampleGrabber getInstance()
     {
         if (_instance == null)
@@ -81,91 +219,138 @@ public class SampleGrabber
         return _instance;
     }
 
-    private void checkProbe()
+    private IProbe getProbe()
     {
-        EProbeType probeType = ColorHealerModel._instance.getProbe().getEProbeType();
-        if (probeType != _probe.getEProbeType())
+        IProbe probe = ColorHealerModel._instance.getProbe();
+        if (probe == null)
+            throw new IllegalStateException("No probe selected.");
+        return probe;
+    }
+
+    private void ensureThread()
+    {
+        if (_thread == null || !_thread.isAlive())
         {
-            setProbe(ColorHealerModel._instance.getProbesPool().getProbe(probeType));
+            _thread = new Thread(new SamplerRunnable(), "probe sampler");
+            _thread.setDaemon(true);
+            _thread.start();
         }
     }
 
-    private void setProbe(IProbe probe)
+    /**
+     * Subscribe to the samples whose read started after the given time. The probe is only read while a subscriber
+     * waits in take().
+     * 
+     * @param after
+     *            a System.nanoTime() value.
+     */
+    public Subscription subscribe(long after)
     {
-        _probe = probe;
+        synchronized (_lock)
+        {
+            ensureThread();
+            return new Subscription(after);
+        }
     }
 
-    synchronized public void startSamplesGrab(ISampleListener listener)
+    /**
+     * Runs a call on the probe from the sampler thread, between two reads, and waits for it.
+     */
+    public <T> T execute(Callable<T> call) throws Exception
     {
-        synchronized (startLock)
+        FutureTask<T> command = new FutureTask<T>(call);
+        synchronized (_lock)
         {
-            waitForThreadToFinish();
-            _runnable.setListener(listener);
-            launchThread();
-            currentThreadOwner = Thread.currentThread();
+            _commands.add(command);
+            ensureThread();
+            _lock.notifyAll();
+        }
+        try
+        {
+            return command.get();
+        }
+        catch (ExecutionException e)
+        {
+            if (e.getCause() instanceof Exception)
+                throw (Exception) e.getCause();
+            throw e;
         }
     }
 
-    private void waitForThreadToFinish()
+    /**
+     * Lets the probe settle on a newly displayed patch, see {@link IProbe#settle(float)}.
+     */
+    public void settle(final float expectedLum) throws Exception
     {
-        if (_thread != null)
-        {
-            try
-            {
-                _thread.join();
-            }
-            catch (InterruptedException e)
+        execute(new Callable<Void>() {
+            public Void call() throws Exception
             {
-                System.err.println("Thread Error : " + e.getMessage());
-            }
-            finally
-            {
-                _thread = null;
+                getProbe().settle(expectedLum);
+                return null;
             }
+        });
+    }
+
+    /**
+     * Ends the patch given to {@link #settle(float)}, see {@link IProbe#endPatch()}. Called when the patch is done,
+     * failed or not, so it doesn't throw.
+     */
+    public void endPatch()
+    {
+        try
+        {
+            execute(new Callable<Void>() {
+                public Void call() throws Exception
+                {
+                    IProbe probe = ColorHealerModel._instance.getProbe();
+                    if (probe != null)
+                        probe.endPatch();
+                    return null;
+                }
+            });
+        }
+        catch (Exception e)
+        {
+            LOGGER.warning("Patch end failed : " + e);
         }
     }
 
-    private void launchThread()
+    /**
+     * The listener is called from the sampler thread with every sample, until removed or a read fails.
+     */
+    public void startSamplesGrab(ISampleListener listener)
     {
-        _thread = new Thread(_runnable, "continuous measure");
-        _thread.start();
+        synchronized (_lock)
+        {
+            _listeners.add(listener);
+            ensureThread();
+            _lock.notifyAll();
+        }
     }
 
-    public void stopSamplesGrab()
+    public void stopSamplesGrab(ISampleListener listener)
     {
-        if (currentThreadOwner == null)
-            throw new ConcurrentModificationException();
-        if (currentThreadOwner != Thread.currentThread() && _thread != Thread.currentThread())
-            throw new ConcurrentModificationException();
-        if (_thread != null)
-            synchronized (stopLock)
-            {
-                _runnable.stop();
-                if (_thread != Thread.currentThread())
-                    try
-                    {
-                        _thread.join();
-                    }
-                    catch (InterruptedException e)
-                    {
-                        e.printStackTrace();
-                    }
-            }
+        _listeners.remove(listener);
+    }
+
+    public SampleRing getRing()
+    {
+        return _ring;
     }
 
     public String getProbeDescription()
     {
-        return _probe.getProbeDescription();
+        return getProbe().getProbeDescription();
     }
 
     public EProbeType getEProbeType()
     {
-        return _probe.getEProbeType();
+        return getProbe().getEProbeType();
     }
 
     public String getProbeName()
     {
-        return _probe.getEProbeType().getName();
+        return getProbe().getEProbeType().getName();
     }
 
 }
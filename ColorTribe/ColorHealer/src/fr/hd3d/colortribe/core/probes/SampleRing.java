@@ -0,0 +1,124 @@
+package fr.hd3d.colortribe.core.probes;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import fr.hd3d.colortribe.color.type.Point3f;
+
+
+/**
+ * Fixed size ring of the last probe samples, written by a single producer and read by any number of consumers without
+ * locking. Samples are numbered from 0 in publication order ; once the ring is full, the oldest ones are overwritten.
+ */
+public final class SampleRing
+{
+    /**
+     * A sample, or the error of a failed read. Immutable, except for the shared xyz point : don't modify.
+     */
+    public static final class Sample
+    {
+        private final long _sequence;
+        private final Point3f _xyz;
+        private final Exception _error;
+        private final long _readStart;
+        private final long _readEnd;
+
+        private Sample(long sequence, Point3f xyz, Exception error, long readStart, long readEnd)
+        {
+            _sequence = sequence;
+            _xyz = xyz;
+            _error = error;
+            _readStart = readStart;
+            _readEnd = readEnd;
+        }
+
+        public long getSequence()
+        {
+            return _sequence;
+        }
+
+        /**
+         * @return the read value, may be null if the probe returned nothing.
+         */
+        public Point3f getXYZ()
+        {
+            return _xyz;
+        }
+
+        /**
+         * @return the exception thrown by the read, null if it succeeded.
+         */
+        public Exception getError()
+        {
+            return _error;
+        }
+
+        /** System.nanoTime() when the read started. */
+        public long getReadStart()
+        {
+            return _readStart;
+        }
+
+        /** System.nanoTime() when the read returned. */
+        public long getReadEnd()
+        {
+            return _readEnd;
+        }
+    }
+
+    private final AtomicReferenceArray<Sample> _samples;
+    private final int _mask;
+    private volatile long _head = 0;
+
+    /**
+     * @param capacity
+     *            rounded up to a power of 2.
+     */
+    public SampleRing(int capacity)
+    {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        _samples = new AtomicReferenceArray<Sample>(size);
+        _mask = size - 1;
+    }
+
+    public int getCapacity()
+    {
+        return _mask + 1;
+    }
+
+    /**
+     * @return the sequence number the next published sample will get.
+     */
+    public long getHead()
+    {
+        return _head;
+    }
+
+    /**
+     * @return the oldest sequence number still in the ring.
+     */
+    public long getTail()
+    {
+        return Math.max(0, _head - getCapacity());
+    }
+
+    /**
+     * To be called from the producer thread only.
+     */
+    void publish(Point3f xyz, Exception error, long readStart, long readEnd)
+    {
+        final long sequence = _head;
+        _samples.set((int) (sequence & _mask), new Sample(sequence, xyz, error, readStart, readEnd));
+        _head = sequence + 1;
+    }
+
+    /**
+     * @return the sample with this sequence number, null if it isn't published yet or was overwritten.
+     */
+    public Sample get(long sequence)
+    {
+        if (sequence < 0 || sequence >= _head)
+            return null;
+        Sample sample = _samples.get((int) (sequence & _mask));
+        return sample != null && sample._sequence == sequence ? sample : null;
+    }
+}
@@ -0,0 +1,147 @@
+package fr.hd3d.colortribe.core.probes;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+import fr.hd3d.colortribe.color.type.Point3f;
+
+
+/**
+ * Waits for the display to settle on a new patch instead of a fixed delay.
+ *
+ * Samples are read back to back and a least squares line is fitted over the last readings of x, y and Y. The patch is
+ * stable once the drift of that line across the window is within the tolerance. Once the window is full, a drift no
+ * larger than what the probe noise can explain is accepted too. The window starts at the minimum count of samples of a measure and only grows while the drift test
+ * fails : a settled panel costs no read on top of the measure, slow ones get exactly the time they need.
+ */
+public class SettlingDetector
+{
+    private final static Logger LOGGER = Logger.getLogger(SettlingDetector.class.getSimpleName());
+    // slope standard errors allowed on top of the tolerance
+    private static final float NOISE_FACTOR = 2f;
+
+    private final int _minWindow;
+    private final int _maxWindow;
+    private final float _yTolerance;
+    private final float _xyTolerance;
+    private final long _timeout;
+
+    /**
+     * @param minWindow
+     *            successive readings which must agree on a settled panel, at least 2
+     * @param maxWindow
+     *            longest window, at least 3 to estimate the noise
+     * @param yTolerance
+     *            drift of Y allowed across the window, relative to mean Y
+     * @param xyTolerance
+     *            drift of x and y allowed across the window
+     * @param timeoutMillis
+     *            time after which the patch is taken as it is
+     */
+    public SettlingDetector(int minWindow, int maxWindow, float yTolerance, float xyTolerance, long timeoutMillis)
+    {
+        _minWindow = Math.max(2, minWindow);
+        _maxWindow = Math.max(Math.max(3, maxWindow), _minWindow);
+        _yTolerance = yTolerance;
+        _xyTolerance = xyTolerance;
+        _timeout = timeoutMillis;
+    }
+
+    /**
+     * Reads samples until the display is stable or the timeout is reached. A read still running at the timeout is not
+     * waited for.
+     *
+     * @return the readings of the last window, oldest first. They are valid samples of the patch, fewer than the
+     *         minimum window on timeout. Null readings from the probe are left out.
+     */
+    public List<Point3f> awaitSettled(SampleGrabber.Subscription samples) throws Exception
+    {
+        long deadline = System.nanoTime() + _timeout * 1000000L;
+        List<Point3f> readings = new ArrayList<Point3f>(_maxWindow + 1);
+        while (true)
+        {
+            long remaining = (deadline - System.nanoTime()) / 1000000L;
+            if (remaining <= 0)
+            {
+                LOGGER.warning("Display not settled after " + _timeout + " ms, measuring anyway.");
+                return readings;
+            }
+            Point3f sample = samples.poll(remaining);
+            if (sample != null && addReading(readings, sample))
+                return readings;
+        }
+    }
+
+    /**
+     * Slides the window over a new reading.
+     * 
+     * @return true if the display is stable on the window.
+     */
+    boolean addReading(List<Point3f> readings, Point3f sample)
+    {
+        if (readings.size() == _maxWindow)
+            readings.remove(0);
+        readings.add(sample);
+        return readings.size() >= _minWindow && isStable(readings);
+    }
+
+    private boolean isStable(List<Point3f> readings)
+    {
+        boolean isFull = readings.size() >= _maxWindow;
+        float meanY = 0;
+        for (Point3f reading : readings)
+            meanY += reading._c;
+        meanY = Math.abs(meanY / readings.size());
+        return isFlat(readings, 0, _xyTolerance, isFull) && isFlat(readings, 1, _xyTolerance, isFull)
+                && isFlat(readings, 2, _yTolerance * meanY, isFull);
+    }
+
+    private static float component(Point3f value, int index)
+    {
+        if (index == 0)
+            return value._a;
+        else if (index == 1)
+            return value._b;
+        else
+            return value._c;
+    }
+
+    /**
+     * Fits v = a + b.i over the window and compares the drift b.(n-1) to the tolerance, plus the noise on b if
+     * allowed. The noise is estimated from the residuals around the line, so a steady drift (a slow transition) can't
+     * pass for noise : its successive differences would.
+     * 
+     * @param isNoiseAllowed
+     *            false while the window is still growing, a few readings can't tell noise from drift
+     */
+    private static boolean isFlat(List<Point3f> readings, int index, float tolerance, boolean isNoiseAllowed)
+    {
+        int n = readings.size();
+        double meanI = (n - 1) / 2.;
+        double meanV = 0;
+        for (Point3f reading : readings)
+            meanV += component(reading, index);
+        meanV /= n;
+        double sxx = 0, sxv = 0;
+        for (int i = 0; i < n; i++)
+        {
+            double di = i - meanI;
+            sxx += di * di;
+            sxv += di * (component(readings.get(i), index) - meanV);
+        }
+        double slope = sxv / sxx;
+        if (!isNoiseAllowed || n < 3)
+            return Math.abs(slope) * (n - 1) <= tolerance;
+        double ssr = 0;
+        for (int i = 0; i < n; i++)
+        {
+            double residual = component(readings.get(i), index) - meanV - slope * (i - meanI);
+            ssr += residual * residual;
+        }
+        // the line takes 2 degrees of freedom
+        double sigma = Math.sqrt(ssr / (n - 2));
+        double slopeError = sigma / Math.sqrt(sxx);
+        return Math.abs(slope) * (n - 1) <= tolerance + NOISE_FACTOR * slopeError * (n - 1);
+    }
+}
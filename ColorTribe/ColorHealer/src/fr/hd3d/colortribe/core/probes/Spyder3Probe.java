@@ -21,6 +21,8 @@ class Spyder3Probe extends AbstractProbe
     private int _dllVersion = 0;
     private int _hardWareVersion = 0;
 
+    private final IntegrationScheduler _scheduler = new IntegrationScheduler();
+
     public Spyder3Probe()
     {
         _isOpen = false;
@@ -91,6 +93,7 @@ class Spyder3Probe extends AbstractProbe
 
             _spydy.Autorize(Spyder3.apiAutorizationKey, 1);
             _isOpen = true;
+            _scheduler.reset();
         }
         catch (SpyderException e)
         {
@@ -101,16 +104,31 @@ class Spyder3Probe extends AbstractProbe
         return true;
     }
 
-    public Point3f readXYZ() throws Exception
+    /**
+     * Short pre-read of the displayed patch, which corrects the predicted luminance used to choose the integration time
+     * of the following reads. Whether the display settled is judged on those reads, see the settling detector.
+     */
+    public void settle(float expectedLum) throws Exception
     {
+        Point3f preRead = readXYZ(_scheduler.getPreReadFrameCount(expectedLum));
+        _scheduler.schedule(expectedLum, preRead._c);
+    }
 
-        // TODO Measurement Time Recommendations
-        // From our testing, we have found measurement (integration) times of 5 seconds
-        // per sample to be optimal for measurements below 4 cd/m2, and measurement times of 2 seconds per sample to be
-        // optimal for measurements at 4 cd/m2 and above. These measurement times are for typical LCD displays, and may
-        // vary with other device types.
+    /**
+     * Reads which aren't preceded by a settle use the default integration time, not the one of the last patch.
+     */
+    public void endPatch()
+    {
+        _scheduler.reset();
+    }
 
-        int nFrame = 2 * 60;
+    public Point3f readXYZ() throws Exception
+    {
+        return readXYZ(_scheduler.getFrameCount());
+    }
+
+    private Point3f readXYZ(int nFrame) throws Exception
+    {
         int[/* 3 [x,y,z] */] XYZ = _spydy.GetXYZ(nFrame);
         float Y = XYZ[1] / (float) 1000;
         float x = XYZ[0] / (float) (XYZ[0] + XYZ[1] + XYZ[2]);
@@ -118,7 +136,6 @@ class Spyder3Probe extends AbstractProbe
         return new Point3f(x, y, Y);// fff //ciexyY
     }
 
-
     public boolean isOpen()
     {
         return _isOpen;
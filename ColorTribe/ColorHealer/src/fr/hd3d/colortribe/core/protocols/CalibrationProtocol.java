@@ -9,13 +9,20 @@ import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.text.ParseException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.logging.Logger;
 
+import fr.hd3d.colortribe.color.ColorMeasure;
 import fr.hd3d.colortribe.core.ColorHealerModel;
 import fr.hd3d.colortribe.core.MeasuresSet;
+import fr.hd3d.colortribe.core.PatchSequence;
 import fr.hd3d.colortribe.core.correction.AbstractCorrection;
+import fr.hd3d.colortribe.core.correction.AdaptivePatchPlanner;
 import fr.hd3d.colortribe.gui.steps.BeforeStep;
 import fr.hd3d.colortribe.gui.steps.CorrectionStep;
 import fr.hd3d.colortribe.gui.steps.DisplayStep;
@@ -31,6 +38,12 @@ import fr.hd3d.colortribe.gui.steps.Step.StepStatus;
 
 public class CalibrationProtocol extends AbstractProtocol
 {
+    private final static Logger LOGGER = Logger.getLogger(CalibrationProtocol.class.getSimpleName());
+    /** Gamma ramp : LUT error allowed (half an 8 bit code) and gamma range searched, as ENSLLColorCorrection. */
+    private static final float LUT_TOLERANCE = 0.5f / 255;
+    private static final float MIN_FIT_GAMMA = 1f;
+    private static final float MAX_FIT_GAMMA = 4f;
+
     private LinkedHashMap<String, Step> _steps;
     private String _selectedStep;
     private boolean shouldAbort;
@@ -254,6 +267,55 @@ public class CalibrationProtocol extends AbstractProtocol
         return patches;
     }
 
+    /**
+     * Queues the patches in the order needing the least settle time.
+     * 
+     * @return the queued measures, in measuring order.
+     */
+    private List<CompletableFuture<ColorMeasure>> queueInSequence(MeasuresSet set, PatchSequence sequence,
+            String label)
+    {
+        LOGGER.fine("Patches reordered, predicted settle time saving : "
+                + Math.round(sequence.getPredictedSaving() * 100) + "%");
+        List<CompletableFuture<ColorMeasure>> queued = new ArrayList<CompletableFuture<ColorMeasure>>();
+        for (Color color : sequence.getOrderedPatches())
+        {
+            queued.add(set.queueMeasure(color, label, true));
+        }
+        return queued;
+    }
+
+    /**
+     * Measures the patches in the order needing the least settle time, waiting for them in that order so that a
+     * failure or an abort is seen as soon as it happens.
+     * 
+     * @param isAbortable
+     *            true to stop on {@link #abortGammaMeasures()}
+     * @return the measures in the order of the given patches, null if the measures failed or were aborted.
+     */
+    private List<ColorMeasure> measureInSequence(MeasuresSet set, List<Color> patches, String label,
+            boolean isAbortable)
+    {
+        PatchSequence sequence = PatchSequence.optimize(patches);
+        List<ColorMeasure> measures = new ArrayList<ColorMeasure>(patches.size());
+        for (CompletableFuture<ColorMeasure> measure : queueInSequence(set, sequence, label))
+        {
+            if (!set.waitForMeasure(measure))
+            {
+                set.cancelQueuedMeasures();
+                return null;
+            }
+            if (isAbortable && shouldAbort)
+            {
+                set.cancelQueuedMeasures();
+                abortAndClean();
+                return null;
+            }
+            measures.add(measure.join());
+        }
+        return sequence.toOriginalOrder(measures);
+    }
+
     public void launchGammaMeasures()
     {
         ColorHealerModel model = ColorHealerModel._instance;
@@ -272,20 +334,35 @@ public class CalibrationProtocol extends AbstractProtocol
             {
                 addRegularIntervalPatches(patches, 15, 1.25f);
             }
-            boolean res;
-            for (Color color : patches)
+            // the patches list is only the candidates, measures go where the curves are still uncertain
+            AdaptivePatchPlanner planner = new AdaptivePatchPlanner(patches, LUT_TOLERANCE, MIN_FIT_GAMMA,
+                    MAX_FIT_GAMMA);
+            // measuring order ; the planner is asked again after each measure, so the probe only waits for the next
+            // patch when the last measured channel is the only one left
+            Deque<CompletableFuture<ColorMeasure>> queued = new ArrayDeque<CompletableFuture<ColorMeasure>>(
+                    queueInSequence(samplesSet, PatchSequence.optimize(planner.nextPatches()), "gamma measure"));
+            while (!queued.isEmpty())
             {
-                res = samplesSet.mesureThisColor(samplesSet, color, "gamma measure");
-                if (!res)
+                CompletableFuture<ColorMeasure> measure = queued.poll();
+                if (!samplesSet.waitForMeasure(measure))
+                {
+                    samplesSet.cancelQueuedMeasures();
                     return;
+                }
                 if (shouldAbort)
                 {
+                    samplesSet.cancelQueuedMeasures();
                     abortAndClean();
                     return;
                 }
-
+                planner.addMeasure(measure.join());
                 notifyMeasuresSetChanged();
+                List<Color> next = planner.nextPatches();
+                if (!next.isEmpty())
+                    queued.addAll(queueInSequence(samplesSet, PatchSequence.optimize(next), "gamma measure"));
             }
+            LOGGER.info("Gamma measured with " + planner.getMeasuredCount() + " of " + planner.getCandidateCount()
+                    + " patches.");
             model.setCurrentCorrection(model.getCurrentMeasuresSetIndex());
 
         }
@@ -346,14 +423,8 @@ public class CalibrationProtocol extends AbstractProtocol
             List<Color> patches = getCheckPatches();
             System.out.println("validation with " + patches.size() + "patches.");
 
-            boolean res;
-            for (Color color : patches)
-            {
-                res = set.mesureThisColor(set, color, "validation measure");
-                if (!res)
-                    return;
-
-            }
+            if (measureInSequence(set, patches, "validation measure", false) == null)
+                return;
 
             model.getCorrection().setMeasuredGamma(set);
         }
@@ -0,0 +1,98 @@
+package fr.hd3d.colortribe.gui;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.swing.SwingUtilities;
+
+
+/**
+ * Hands measurement snapshots over from worker threads to Swing.
+ * 
+ * Workers publish immutable snapshots as fast as the probe produces them. Snapshots published between two frames are
+ * coalesced : only the latest one is rendered, on the EDT, at most maxFramesPerSecond times per second.
+ */
+public class UiUpdateBus<T>
+{
+    public static final int DEFAULT_FRAMES_PER_SECOND = 30;
+
+    public interface IRenderer<T>
+    {
+        /**
+         * Called on the EDT with the latest published snapshot.
+         */
+        void render(T snapshot);
+    }
+
+    private static final ScheduledExecutorService _scheduler = Executors
+            .newSingleThreadScheduledExecutor(new ThreadFactory() {
+                public Thread newThread(Runnable runnable)
+                {
+                    Thread thread = new Thread(runnable, "ui update bus");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    private final IRenderer<T> _renderer;
+    private final long _framePeriod;
+    private final AtomicReference<T> _latest = new AtomicReference<T>();
+    private final AtomicBoolean _isScheduled = new AtomicBoolean(false);
+    private volatile long _lastRender;
+
+    private final Runnable _render = new Runnable() {
+        public void run()
+        {
+            // cleared first, so that a snapshot published while rendering schedules a new frame
+            _isScheduled.set(false);
+            T snapshot = _latest.getAndSet(null);
+            if (snapshot == null)
+                return;
+            _lastRender = System.nanoTime();
+            _renderer.render(snapshot);
+        }
+    };
+
+    private final Runnable _invokeRender = new Runnable() {
+        public void run()
+        {
+            SwingUtilities.invokeLater(_render);
+        }
+    };
+
+    public UiUpdateBus(IRenderer<T> renderer)
+    {
+        this(renderer, DEFAULT_FRAMES_PER_SECOND);
+    }
+
+    public UiUpdateBus(IRenderer<T> renderer, int maxFramesPerSecond)
+    {
+        if (maxFramesPerSecond <= 0)
+            throw new IllegalArgumentException("Frame rate must be positive : " + maxFramesPerSecond);
+        _renderer = renderer;
+        _framePeriod = TimeUnit.SECONDS.toNanos(1) / maxFramesPerSecond;
+        _lastRender = System.nanoTime() - _framePeriod;
+    }
+
+    /**
+     * Can be called from any thread. The snapshot replaces any one not rendered yet.
+     */
+    public void publish(T snapshot)
+    {
+        if (snapshot == null)
+            throw new IllegalArgumentException("Snapshot can't be null.");
+        _latest.set(snapshot);
+        if (_isScheduled.compareAndSet(false, true))
+        {
+            long wait = _lastRender + _framePeriod - System.nanoTime();
+            if (wait <= 0)
+                SwingUtilities.invokeLater(_render);
+            else
+                _scheduler.schedule(_invokeRender, wait, TimeUnit.NANOSECONDS);
+        }
+    }
+}
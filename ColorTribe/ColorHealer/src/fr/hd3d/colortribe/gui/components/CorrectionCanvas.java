@@ -11,7 +11,6 @@ import java.awt.event.MouseWheelEvent;
 import java.awt.event.MouseWheelListener;
 import java.util.List;
 
-import fr.hd3d.colortribe.color.type.Point2f;
 import fr.hd3d.colortribe.core.ColorHealerModel;
 import fr.hd3d.colortribe.core.correction.AbstractCorrection;
 
@@ -114,7 +113,7 @@ public class CorrectionCanvas extends GlLikeCanvas
         // display correction : x -> pixel value, y -> corrected pixel value
         if (colorCorrection != null)
         {
-            List<Point2f> points;
+            float[] points;
             Color color;
             boolean display;
             for (int i = 0; i < 3; i++)
@@ -137,16 +136,15 @@ public class CorrectionCanvas extends GlLikeCanvas
                     color = Color.blue;
                     display = _displayBlueLine;
                 }
-                Point2f lastPoint = null;
-                if (display)
-                    for (Point2f point : points)
+                if (display && points != null)
+                {
+                    float maxIndex = points.length - 1;
+                    for (int j = 1; j < points.length; j++)
                     {
-                        // drawShape(g2, color, point.x, point.y, scaleX, scaleY, smallPointSize,
-                        // EShapeType.BORDERED_FILLED_RECTANGLE);
-                        if (lastPoint != null)
-                            drawLine(g2, color, point._a, point._b, lastPoint._a, lastPoint._b, scaleX, scaleY);
-                        lastPoint = point;
+                        drawLine(g2, color, j / maxIndex, points[j], (j - 1) / maxIndex, points[j - 1], scaleX,
+                                scaleY);
                     }
+                }
             }
             // display mesured value : x -> pixel values, y -> lum
             // for (int i = 0; i < 3; i++) {
@@ -3,6 +3,7 @@ package fr.hd3d.colortribe.gui.components;
 import java.awt.Color;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.awt.geom.AffineTransform;
 import java.awt.image.BufferedImage;
 
 import javax.swing.JPanel;
@@ -16,6 +17,8 @@ class GlLikeCanvas extends JPanel {
     protected static int smallPointSize = 4;
     protected static int middlePointSize = 6;
     protected static int bigPointSize = 8;
+    private BufferedImage _staticBackground = null;
+    private BufferedImage _staticForeground = null;
 
     public GlLikeCanvas() {
       super();
@@ -43,6 +46,76 @@ class GlLikeCanvas extends JPanel {
     }    
 
 
+    /**
+     * Paints what only changes with the size or the targets, under the static foreground and the measures. Painted
+     * once in the repere set by paintComponent, then cached by drawStaticBackground.
+     */
+    void paintStaticBackground(Graphics2D g2) {
+    }
+
+    /**
+     * Paints what only changes with the size or the targets, over the measures. Cached by drawStaticForeground.
+     */
+    void paintStaticForeground(Graphics2D g2) {
+    }
+
+    /**
+     * The static layers will be painted again on next repaint.
+     */
+    void invalidateStaticLayers() {
+        _staticBackground = null;
+        _staticForeground = null;
+        repaint();
+    }
+
+    /**
+     * Blits the static background, to be called in the repere set by paintComponent.
+     */
+    final void drawStaticBackground(Graphics2D g2) {
+        if (!isLayerValid(_staticBackground))
+            _staticBackground = createLayer(BufferedImage.TYPE_INT_RGB, true);
+        blitLayer(g2, _staticBackground);
+    }
+
+    /**
+     * Blits the static foreground, to be called in the repere set by paintComponent.
+     */
+    final void drawStaticForeground(Graphics2D g2) {
+        if (!isLayerValid(_staticForeground))
+            _staticForeground = createLayer(BufferedImage.TYPE_INT_ARGB, false);
+        blitLayer(g2, _staticForeground);
+    }
+
+    private boolean isLayerValid(BufferedImage layer) {
+        return layer != null && layer.getWidth() == getWidth() && layer.getHeight() == getHeight();
+    }
+
+    private BufferedImage createLayer(int type, boolean background) {
+        final BufferedImage layer = new BufferedImage(Math.max(1, getWidth()), Math.max(1, getHeight()), type);
+        final Graphics2D g2 = layer.createGraphics();
+        if (background) {
+            g2.setColor(getBackground());
+            g2.fillRect(0, 0, layer.getWidth(), layer.getHeight());
+        }
+        g2.scale(1, -1);
+        g2.translate(0, -this.getSize().height);
+        if (background)
+            paintStaticBackground(g2);
+        else
+            paintStaticForeground(g2);
+        g2.dispose();
+        return layer;
+    }
+
+    private void blitLayer(Graphics2D g2, BufferedImage layer) {
+        final AffineTransform transform = g2.getTransform();
+        // back to the component repere
+        g2.translate(0, this.getSize().height);
+        g2.scale(1, -1);
+        g2.drawImage(layer, 0, 0, null);
+        g2.setTransform(transform);
+    }
+
     public BufferedImage getBufferedImage()
     {
         BufferedImage bufferedImage = new BufferedImage(getWidth(), getHeight(), BufferedImage.TYPE_INT_RGB);
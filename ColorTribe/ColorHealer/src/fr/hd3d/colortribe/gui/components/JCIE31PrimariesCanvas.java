@@ -81,95 +81,119 @@ public class JCIE31PrimariesCanvas extends GlLikeCanvas
     public void setPrimariesToDisplay(IRgbPrimary primariesToDisplay)
     {
         _primariesToDisplay = primariesToDisplay;
+        invalidateStaticLayers();
     }
 
     public void setTargetPoint(float x, float y)
     {
+        if (_targetPoint._a == x && _targetPoint._b == y)
+            return;
         _targetPoint._a = x;
         _targetPoint._b = y;
+        invalidateStaticLayers();
     }
 
-    public void paintComponent(Graphics g)
+    private int getScale()
+    {
+        return (int) (getWidth() * 1.17);
+    }
+
+    void paintStaticBackground(Graphics2D g2)
     {
-        super.paintComponent(g);
-        Graphics2D g2 = (Graphics2D) g;
         drawAxis(g2);
+        int scale = getScale();
+        // spectrum locus
+        GeneralPath gp = new GeneralPath();
+
+        int i = 0;
+        while (i < ColorSpectrumTables.spectrum_x.length)
+        {
+            if (i == 0)
+                gp.moveTo(ColorSpectrumTables.spectrum_x[i] * scale, ColorSpectrumTables.spectrum_y[i] * scale);
+            gp.lineTo(ColorSpectrumTables.spectrum_x[i] * scale, ColorSpectrumTables.spectrum_y[i] * scale);
+            ++i;
+        }
+        gp.closePath();
+        g2.setColor(Color.darkGray);
+        g2.draw(gp);
+    }
+
+    void paintStaticForeground(Graphics2D g2)
+    {
+        g2.translate(5, 5);
         Point2f currentPoint;
-        int scale =(int)( getWidth()*1.17);
-        MeasuresSet samplesSet = ColorHealerModel._instance.getBasicMeasuresSet();
+        int scale = getScale();
+        drawShape(g2, Color.yellow, _targetPoint._a, _targetPoint._b, scale, bigPointSize, EShapeType.CIRCLE);
+        // /// red
+        currentPoint = _primariesToDisplay.getRed().getxyCoordinates();
+        drawShape(g2, Color.white, currentPoint._a, currentPoint._b, scale, middlePointSize, EShapeType.CIRCLE);
+        // /// green
+        currentPoint = _primariesToDisplay.getGreen().getxyCoordinates();
+        drawShape(g2, Color.white, currentPoint._a, currentPoint._b, scale, middlePointSize, EShapeType.CIRCLE);
+        // /// blue
+        currentPoint = _primariesToDisplay.getBlue().getxyCoordinates();
+        drawShape(g2, Color.white, currentPoint._a, currentPoint._b, scale, middlePointSize, EShapeType.CIRCLE);
+    }
 
+    public void paintComponent(Graphics g)
+    {
+        super.paintComponent(g);
         if (_userScale == 1)
         {
-            // spectrum locus
-            GeneralPath gp = new GeneralPath();
+            Graphics2D g2 = (Graphics2D) g;
+            drawStaticBackground(g2);
+            // measures, in the repere set by drawAxis
+            Graphics2D measuresGraphics = (Graphics2D) g2.create();
+            measuresGraphics.translate(5, 5);
+            paintMeasures(measuresGraphics);
+            measuresGraphics.dispose();
+            drawStaticForeground(g2);
+        }
+    }
 
-            int i = 0;
-            while (i < ColorSpectrumTables.spectrum_x.length)
-            {
-                if (i == 0)
-                    gp.moveTo(ColorSpectrumTables.spectrum_x[i] * scale, ColorSpectrumTables.spectrum_y[i] * scale);
-                gp.lineTo(ColorSpectrumTables.spectrum_x[i] * scale, ColorSpectrumTables.spectrum_y[i] * scale);
-                ++i;
-            }
-            gp.closePath();
-            g2.setColor(Color.darkGray);
-            g2.draw(gp);
-            // //////////////// RVB measured
-            boolean drawTriangle = true;
-            GeneralPath triangle = new GeneralPath();
-            Point3f currentPoint3D;
-            if (samplesSet.getMeasure(Color.red) != null)
-            {
-                currentPoint3D = samplesSet.getMeasure(Color.red).getValue();
-                triangle.moveTo(currentPoint3D._a * scale, currentPoint3D._b * scale);
-            }
-            else
-                drawTriangle = false;
+    private void paintMeasures(Graphics2D g2)
+    {
+        int scale = getScale();
+        MeasuresSet samplesSet = ColorHealerModel._instance.getBasicMeasuresSet();
+        // //////////////// RVB measured
+        boolean drawTriangle = true;
+        GeneralPath triangle = new GeneralPath();
+        Point3f currentPoint3D;
+        if (samplesSet.getMeasure(Color.red) != null)
+        {
+            currentPoint3D = samplesSet.getMeasure(Color.red).getValue();
+            triangle.moveTo(currentPoint3D._a * scale, currentPoint3D._b * scale);
+        }
+        else
+            drawTriangle = false;
 
-            if (samplesSet.getMeasure(Color.green) != null)
-            {
-                currentPoint3D = samplesSet.getMeasure(Color.green).getValue();
-                if (drawTriangle)
-                    triangle.lineTo(currentPoint3D._a * scale, currentPoint3D._b * scale);
-            }
-            else
-                drawTriangle = false;
-            if (samplesSet.getMeasure(Color.blue) != null)
-            {
-                currentPoint3D = samplesSet.getMeasure(Color.blue).getValue();
-                if (drawTriangle)
-                    triangle.lineTo(currentPoint3D._a * scale, currentPoint3D._b * scale);
-            }
-            else
-                drawTriangle = false;
-            // // draw triangle
+        if (samplesSet.getMeasure(Color.green) != null)
+        {
+            currentPoint3D = samplesSet.getMeasure(Color.green).getValue();
             if (drawTriangle)
-            {
-                g2.setColor(Color.darkGray);
-                g2.fill(triangle);
-            }
-            //
-            drawShape(g2, Color.yellow, _targetPoint._a, _targetPoint._b, scale, bigPointSize, EShapeType.CIRCLE);
-            List<ColorMeasure> measures = samplesSet.getMeasures();
-            for (ColorMeasure mes : measures)
-            {
-                Point3f point = mes.getValue();
-                drawShape(g2, mes.getPatchColor(), point._a, point._b, scale, smallPointSize, EShapeType.RECTANGLE);
-            }
-
-            // /// red
-            currentPoint = _primariesToDisplay.getRed().getxyCoordinates();
-            drawShape(g2, Color.white, currentPoint._a, currentPoint._b, scale, middlePointSize, EShapeType.CIRCLE);
-            // /// green
-            currentPoint = _primariesToDisplay.getGreen().getxyCoordinates();
-            drawShape(g2, Color.white, currentPoint._a, currentPoint._b, scale, middlePointSize, EShapeType.CIRCLE);
-            // /// blue
-            currentPoint = _primariesToDisplay.getBlue().getxyCoordinates();
-            drawShape(g2, Color.white, currentPoint._a, currentPoint._b, scale, middlePointSize, EShapeType.CIRCLE);
-
-            // targetPoint
-            // drawShape(g2, Color.white, _measuredPoint._a, _measuredPoint._b, scale, smallPointSize,
-            // EShapeType.RECTANGLE);
+                triangle.lineTo(currentPoint3D._a * scale, currentPoint3D._b * scale);
+        }
+        else
+            drawTriangle = false;
+        if (samplesSet.getMeasure(Color.blue) != null)
+        {
+            currentPoint3D = samplesSet.getMeasure(Color.blue).getValue();
+            if (drawTriangle)
+                triangle.lineTo(currentPoint3D._a * scale, currentPoint3D._b * scale);
+        }
+        else
+            drawTriangle = false;
+        // // draw triangle
+        if (drawTriangle)
+        {
+            g2.setColor(Color.darkGray);
+            g2.fill(triangle);
+        }
+        List<ColorMeasure> measures = samplesSet.getMeasures();
+        for (ColorMeasure mes : measures)
+        {
+            Point3f point = mes.getValue();
+            drawShape(g2, mes.getPatchColor(), point._a, point._b, scale, smallPointSize, EShapeType.RECTANGLE);
         }
     }
 }
@@ -78,99 +78,125 @@ public class JCIE76PrimariesCanvas extends GlLikeCanvas
     public void setPrimariesToDisplay(IRgbPrimary primariesToDisplay)
     {
         _primariesToDisplay = primariesToDisplay;
+        invalidateStaticLayers();
     }
 
     public void setTargetPoint(float x, float y)
     {
         Point2f uv = ColorMath.xyToupvp(x, y);
+        if (_targetPoint._a == uv._a && _targetPoint._b == uv._b)
+            return;
         _targetPoint._a = uv._a;
         _targetPoint._b = uv._b;
+        invalidateStaticLayers();
     }
 
+    private int getScale()
+    {
+        return (int) (getWidth() * 1.55f);
+    }
 
-    public void paintComponent(Graphics g)
+    void paintStaticBackground(Graphics2D g2)
     {
-        super.paintComponent(g);
-        Graphics2D g2 = (Graphics2D) g;
         drawAxis(g2);
+        int scale = getScale();
+        // spectrum locus
+        GeneralPath gp = new GeneralPath();
+
+        int i = 0;
+        while (i < ColorSpectrumTables.spectrum_x.length)
+        {
+            Point2f uv = ColorMath.xyToupvp(ColorSpectrumTables.spectrum_x[i], ColorSpectrumTables.spectrum_y[i]);
+            if (i == 0)
+                gp.moveTo(uv._a * scale, uv._b * scale);
+            gp.lineTo(uv._a * scale, uv._b * scale);
+            ++i;
+        }
+        gp.closePath();
+        g2.setColor(Color.darkGray);
+        g2.draw(gp);
+    }
+
+    void paintStaticForeground(Graphics2D g2)
+    {
+        g2.translate(5, 5);
         Point2f currentPoint;
-        int scale = (int)(getWidth()*1.55f);
-        MeasuresSet samplesSet = ColorHealerModel._instance.getBasicMeasuresSet();
+        int scale = getScale();
+        // /// red
+        currentPoint = _primariesToDisplay.getRed().getuvCoordinates();
+        drawShape(g2, Color.white, currentPoint._a, currentPoint._b, scale, middlePointSize, EShapeType.CIRCLE);
+        // /// green
+        currentPoint = _primariesToDisplay.getGreen().getuvCoordinates();
+        drawShape(g2, Color.white, currentPoint._a, currentPoint._b, scale, middlePointSize, EShapeType.CIRCLE);
+        // /// blue
+        currentPoint = _primariesToDisplay.getBlue().getuvCoordinates();
+        drawShape(g2, Color.white, currentPoint._a, currentPoint._b, scale, middlePointSize, EShapeType.CIRCLE);
+        drawShape(g2, Color.yellow, _targetPoint._a, _targetPoint._b, scale, bigPointSize, EShapeType.CIRCLE);
+    }
 
+    public void paintComponent(Graphics g)
+    {
+        super.paintComponent(g);
         if (_userScale == 1)
         {
-            // spectrum locus
-            GeneralPath gp = new GeneralPath();
-
-            int i = 0;
-            while (i < ColorSpectrumTables.spectrum_x.length)
-            {
-                Point2f uv = ColorMath.xyToupvp(ColorSpectrumTables.spectrum_x[i], ColorSpectrumTables.spectrum_y[i]);
-                if (i == 0)
-                    gp.moveTo(uv._a * scale, uv._b * scale);
-                gp.lineTo(uv._a * scale, uv._b * scale);
-                ++i;
-            }
-            gp.closePath();
-            g2.setColor(Color.darkGray);
-            g2.draw(gp);
+            Graphics2D g2 = (Graphics2D) g;
+            drawStaticBackground(g2);
+            // measures, in the repere set by drawAxis
+            Graphics2D measuresGraphics = (Graphics2D) g2.create();
+            measuresGraphics.translate(5, 5);
+            paintMeasures(measuresGraphics);
+            measuresGraphics.dispose();
+            drawStaticForeground(g2);
+        }
+    }
 
-          
-            // //////////////// RVB measured
-            GeneralPath triangle = new GeneralPath();
-            Point3f currentPoint3D;
-            boolean drawTriangle = true;
-            if (samplesSet.getMeasure(Color.red) != null)
-            {
-                currentPoint3D = samplesSet.getMeasure(Color.red).getValue();
-                Point2f uv = ColorMath.xyToupvp(currentPoint3D._a, currentPoint3D._b);
-                triangle.moveTo(uv._a * scale, uv._b * scale);
-            }
-            else
-                drawTriangle = false;
+    private void paintMeasures(Graphics2D g2)
+    {
+        int scale = getScale();
+        MeasuresSet samplesSet = ColorHealerModel._instance.getBasicMeasuresSet();
+        // //////////////// RVB measured
+        GeneralPath triangle = new GeneralPath();
+        Point3f currentPoint3D;
+        boolean drawTriangle = true;
+        if (samplesSet.getMeasure(Color.red) != null)
+        {
+            currentPoint3D = samplesSet.getMeasure(Color.red).getValue();
+            Point2f uv = ColorMath.xyToupvp(currentPoint3D._a, currentPoint3D._b);
+            triangle.moveTo(uv._a * scale, uv._b * scale);
+        }
+        else
+            drawTriangle = false;
 
-            if (samplesSet.getMeasure(Color.green) != null)
-            {
-                currentPoint3D = samplesSet.getMeasure(Color.green).getValue();
-                Point2f uv = ColorMath.xyToupvp(currentPoint3D._a, currentPoint3D._b);
-                if (drawTriangle)
-                    triangle.lineTo(uv._a * scale, uv._b * scale);
-            }
-            else
-                drawTriangle = false;
-            if (samplesSet.getMeasure(Color.blue) != null)
-            {
-                currentPoint3D = samplesSet.getMeasure(Color.blue).getValue();
-                Point2f uv = ColorMath.xyToupvp(currentPoint3D._a, currentPoint3D._b);
-                if (drawTriangle)
-                    triangle.lineTo(uv._a * scale, uv._b * scale);
-            }
-            else
-                drawTriangle = false;
-            // // draw triangle
+        if (samplesSet.getMeasure(Color.green) != null)
+        {
+            currentPoint3D = samplesSet.getMeasure(Color.green).getValue();
+            Point2f uv = ColorMath.xyToupvp(currentPoint3D._a, currentPoint3D._b);
             if (drawTriangle)
-            {
-                g2.setColor(Color.darkGray);
-                g2.fill(triangle);
-            }
-
-            // /// red
-            currentPoint = _primariesToDisplay.getRed().getuvCoordinates();
-            drawShape(g2, Color.white, currentPoint._a, currentPoint._b, scale, middlePointSize, EShapeType.CIRCLE);
-            // /// green
-            currentPoint = _primariesToDisplay.getGreen().getuvCoordinates();
-            drawShape(g2, Color.white, currentPoint._a, currentPoint._b, scale, middlePointSize, EShapeType.CIRCLE);
-            // /// blue
-            currentPoint = _primariesToDisplay.getBlue().getuvCoordinates();
-            drawShape(g2, Color.white, currentPoint._a, currentPoint._b, scale, middlePointSize, EShapeType.CIRCLE);
-            drawShape(g2, Color.yellow, _targetPoint._a, _targetPoint._b, scale, bigPointSize, EShapeType.CIRCLE);
-            List<ColorMeasure> measures = samplesSet.getMeasures();
-            for (ColorMeasure mes : measures)
-            {
-                Point3f point = mes.getValue();
-                Point2f uv = ColorMath.xyToupvp(point._a, point._b);
-                drawShape(g2, mes.getPatchColor(), uv._a, uv._b, scale, smallPointSize, EShapeType.RECTANGLE);
-            }
+                triangle.lineTo(uv._a * scale, uv._b * scale);
+        }
+        else
+            drawTriangle = false;
+        if (samplesSet.getMeasure(Color.blue) != null)
+        {
+            currentPoint3D = samplesSet.getMeasure(Color.blue).getValue();
+            Point2f uv = ColorMath.xyToupvp(currentPoint3D._a, currentPoint3D._b);
+            if (drawTriangle)
+                triangle.lineTo(uv._a * scale, uv._b * scale);
+        }
+        else
+            drawTriangle = false;
+        // // draw triangle
+        if (drawTriangle)
+        {
+            g2.setColor(Color.darkGray);
+            g2.fill(triangle);
+        }
+        List<ColorMeasure> measures = samplesSet.getMeasures();
+        for (ColorMeasure mes : measures)
+        {
+            Point3f point = mes.getValue();
+            Point2f uv = ColorMath.xyToupvp(point._a, point._b);
+            drawShape(g2, mes.getPatchColor(), uv._a, uv._b, scale, smallPointSize, EShapeType.RECTANGLE);
         }
     }
 }
@@ -25,6 +25,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.Semaphore;
 
 import javax.imageio.ImageIO;
 import javax.swing.BorderFactory;
@@ -37,6 +38,7 @@ import javax.swing.JPanel;
 import javax.swing.JScrollPane;
 import javax.swing.JTextArea;
 import javax.swing.JTextField;
+import javax.swing.SwingUtilities;
 import javax.swing.border.TitledBorder;
 
 import fr.hd3d.colortribe.color.EStandardRgbPrimaries;
@@ -47,6 +49,7 @@ import fr.hd3d.colortribe.com.UnpluggedSocketServer;
 import fr.hd3d.colortribe.core.ColorHealerModel;
 import fr.hd3d.colortribe.core.DisplayDevice;
 import fr.hd3d.colortribe.core.MeasuresSet;
+import fr.hd3d.colortribe.core.PatchSequence;
 import fr.hd3d.colortribe.core.DisplayDevice.EDisplayDeviceType;
 import fr.hd3d.colortribe.core.correction.AbstractCorrection;
 import fr.hd3d.colortribe.core.probes.AbstractProbe;
@@ -54,6 +57,7 @@ import fr.hd3d.colortribe.core.probes.CS200Probe;
 import fr.hd3d.colortribe.core.target.ITarget;
 import fr.hd3d.colortribe.gui.CustomTabbedPane;
 import fr.hd3d.colortribe.gui.JHealerColors;
+import fr.hd3d.colortribe.gui.UiUpdateBus;
 import fr.hd3d.colortribe.gui.components.JCIE31PrimariesCanvas;
 import fr.hd3d.colortribe.gui.components.JCIE76PrimariesCanvas;
 import fr.hd3d.colortribe.gui.components.MeasuresCanvas;
@@ -72,13 +76,23 @@ public class BatchMeasuresStep extends Step
     private boolean _isInit = false;
     private JComboBox _primariesCombo;
     private JTextArea _resume;
+    private final UiUpdateBus<String> _resumeBus = new UiUpdateBus<String>(new UiUpdateBus.IRenderer<String>() {
+        public void render(String resume)
+        {
+            _resume.setText(resume);
+            _white31Canvas.repaint();
+            _white76Canvas.repaint();
+            _mesuresCanvas.repaint();
+        }
+    });
     private JFileChooser _fileChooser;
     private ArrayList<Color> _colorPatches = new ArrayList<Color>();;
     private JButton _launchBatchButton;
     private CustomTabbedPane _tabPane;
     private JLabel _displayPatchLabel;
     private JButton _readyButton;
-    private boolean _wasReadyClicked = false;
+    // released by the Go button, the manual batch waits for it before each patch
+    private final Semaphore _readyClicks = new Semaphore(0);
     private MeasuresCanvas _mesuresCanvas;
     private JLabel _gammaValuesLab;
 
@@ -237,7 +251,7 @@ public class BatchMeasuresStep extends Step
             {
                 if (_readyButton.isEnabled())
                 {
-                    _wasReadyClicked = true;
+                    _readyClicks.release();
                 }
             }
 
@@ -390,14 +404,14 @@ public class BatchMeasuresStep extends Step
                     {
                         int patchDuration = Integer.valueOf(delayTextField.getText());
                         int waitTime = Integer.valueOf(timeToLaunchTF.getText());
-                        automaticBatchedMeasures(patchDuration * 1000, waitTime * 1000);
+                        automaticBatchedMeasures(patchDuration * 1000, waitTime * 1000, true);
                     }
                     else if (isManualMode)
                     {
                         manualBatchedMeasures();
                     }
                     else
-                        automaticBatchedMeasures(1, 1);
+                        automaticBatchedMeasures(1, 1, false);
                 }
             }
         });
@@ -697,12 +711,20 @@ public class BatchMeasuresStep extends Step
     private class BatchAction
     {
         private Timer t;
+        private final List<Color> _patches;
 
-        private BatchAction(int actionDuration)
+        /**
+         * @param keepOrder
+         *            false to measure the patches in the order needing the least settle time
+         */
+        private BatchAction(int actionDuration, boolean keepOrder)
         {
+            if (keepOrder)
+                _patches = new ArrayList<Color>(_colorPatches);
+            else
+                _patches = PatchSequence.optimize(_colorPatches).getOrderedPatches();
             t = new Timer();
-            _launchBatchButton.setText("in progress");
-            _launchBatchButton.setEnabled(false);
+            showLaunchState(false, "in progress");
             lockDependantStep("PROBE_MEASURES");
             t.schedule(new OneMeasureAction(), 0, actionDuration);
         }
@@ -714,9 +736,9 @@ public class BatchMeasuresStep extends Step
             public void run()
             {
 
-                if (nbPatchMeasured < _colorPatches.size())
+                if (nbPatchMeasured < _patches.size())
                 {
-                    Color color = _colorPatches.get(nbPatchMeasured);
+                    Color color = _patches.get(nbPatchMeasured);
                     ColorHealerModel model = ColorHealerModel._instance;
                     final MeasuresSet measures = model.getCurrentMeasuresSet();
                     boolean res = measures.mesureThisColor(model.getCurrentMeasuresSet(), color, "");
@@ -725,29 +747,66 @@ public class BatchMeasuresStep extends Step
 
                     String info = "  R   G   B  \t" + "   x  " + "\t" + "   y  " + "\t" + "   Y   \tLabel\n";
                     info += measures.toString();
-                    _resume.setText(info);
-                    _white31Canvas.repaint();
-                    _white76Canvas.repaint();
-                    _mesuresCanvas.repaint();
+                    _resumeBus.publish(info);
                     nbPatchMeasured++;
                 }
                 else
                 {
                     t.cancel();
 
-                    _launchBatchButton.setEnabled(true);
-                    _launchBatchButton.setText("launch batch...");
+                    showLaunchState(true, "launch batch...");
                     unLockDependantStep();
                     AbstractCorrection correction = ColorHealerModel._instance.getCorrection();
                     correction.computeColorCorrection();
                     Point3f gamma = correction.getComputeGamma();
-                    _gammaValuesLab.setText("Red gamma : " + ((int) (gamma._a * 1000)) / 1000f + "  Green gamma : "
+                    showGamma("Red gamma : " + ((int) (gamma._a * 1000)) / 1000f + "  Green gamma : "
                             + ((int) (gamma._b * 1000)) / 1000f + " Blue Gamma : " + ((int) (gamma._c * 1000)) / 1000f);
                 }
             }
         }
     }
 
+    /**
+     * The batch buttons and labels below are updated on the EDT, these can be called from the measure threads. Unlike
+     * the measures resume, no state change may be dropped, so they don't go through the update bus.
+     */
+    private void showLaunchState(final boolean isEnabled, final String text)
+    {
+        SwingUtilities.invokeLater(new Runnable() {
+            public void run()
+            {
+                _launchBatchButton.setEnabled(isEnabled);
+                _launchBatchButton.setText(text);
+            }
+        });
+    }
+
+    /**
+     * @param patchText
+     *            null to keep the current text
+     */
+    private void showManualState(final boolean isReadyEnabled, final String patchText)
+    {
+        SwingUtilities.invokeLater(new Runnable() {
+            public void run()
+            {
+                _readyButton.setEnabled(isReadyEnabled);
+                if (patchText != null)
+                    _displayPatchLabel.setText(patchText);
+            }
+        });
+    }
+
+    private void showGamma(final String text)
+    {
+        SwingUtilities.invokeLater(new Runnable() {
+            public void run()
+            {
+                _gammaValuesLab.setText(text);
+            }
+        });
+    }
+
     private void manualBatchedMeasures()
     {
 
@@ -758,43 +817,40 @@ public class BatchMeasuresStep extends Step
             {
 
                 lockDependantStep("PROBE_MEASURES");
-                _launchBatchButton.setText("in progress");
-                _launchBatchButton.setEnabled(false);
-                _readyButton.setEnabled(true);
+                showLaunchState(false, "in progress");
                 ColorHealerModel model = ColorHealerModel._instance;
                 final MeasuresSet measures = model.getCurrentMeasuresSet();
 
                 for (int i = 0; i < _colorPatches.size(); i++)
                 {
                     Color currentColor = _colorPatches.get(i);
-                    _displayPatchLabel.setText("Display patch " + currentColor.getRed() + " " + currentColor.getGreen()
+                    // clicks made while measuring don't count for this patch
+                    _readyClicks.drainPermits();
+                    showManualState(true, "Display patch " + currentColor.getRed() + " " + currentColor.getGreen()
                             + " " + currentColor.getBlue() + " and clic on Go.");
-                    while (!_wasReadyClicked)
+                    try
                     {
-
+                        _readyClicks.acquire();
+                    }
+                    catch (InterruptedException e)
+                    {
+                        return;
                     }
-                    _wasReadyClicked = false;
-                    _readyButton.setEnabled(false);
+                    showManualState(false, null);
                     boolean res = measures.mesureThisColor(model.getCurrentMeasuresSet(), currentColor, "");
                     if (!res)
                         return;
-                    _readyButton.setEnabled(true);
                     String info = "  R   G   B  \t" + "   x  " + "\t" + "   y  " + "\t" + "   Y   \tLabel\n";
                     info += measures.toString();
-                    _resume.setText(info);
-                    _white31Canvas.repaint();
-                    _white76Canvas.repaint();
-                    _mesuresCanvas.repaint();
+                    _resumeBus.publish(info);
                 }
-                _readyButton.setEnabled(false);
-                _launchBatchButton.setEnabled(true);
-                _displayPatchLabel.setText("Launch batch first.");
-                _launchBatchButton.setText("launch batch...");
+                showManualState(false, "Launch batch first.");
+                showLaunchState(true, "launch batch...");
                 unLockDependantStep();
                 AbstractCorrection correction = ColorHealerModel._instance.getCorrection();
                 correction.computeColorCorrection();
                 Point3f gamma = correction.getComputeGamma();
-                _gammaValuesLab.setText("Red gamma : " + ((int) (gamma._a * 1000)) / 1000f + "    Green gamma : "
+                showGamma("Red gamma : " + ((int) (gamma._a * 1000)) / 1000f + "    Green gamma : "
                         + ((int) (gamma._b * 1000)) / 1000f + "    Blue Gamma : " + ((int) (gamma._c * 1000)) / 1000f);
 
             }
@@ -805,7 +861,7 @@ public class BatchMeasuresStep extends Step
 
     }
 
-    private void automaticBatchedMeasures(final int patchDuration, final int waitingTime)
+    private void automaticBatchedMeasures(final int patchDuration, final int waitingTime, final boolean keepOrder)
     {
 
         Thread thread;
@@ -819,7 +875,7 @@ public class BatchMeasuresStep extends Step
                     for (int i = 0; i < 100; i++)
                     {
                         Thread.sleep(interval); // do nothing for 1000 miliseconds (1 second)
-                        _launchBatchButton.setText("waiting " + (waitingTime - i * interval) / 1000);
+                        showLaunchState(false, "waiting " + (waitingTime - i * interval) / 1000);
                     }
                 }
                 catch (InterruptedException e)
@@ -827,7 +883,7 @@ public class BatchMeasuresStep extends Step
                     e.printStackTrace();
                 }
 
-                new BatchAction(patchDuration);
+                new BatchAction(patchDuration, keepOrder);
 
             }
         };
@@ -77,15 +77,8 @@ public class BeforeStep extends Step
 
     public void init()
     {
-        Runnable runnable = new Runnable() {
-            public void run()
-            {
-                //preload
-                ColorHealerModel._instance.getProbesPool().getRefreshedProbesList();             
-            }
-        };
-        Thread thread = new Thread(runnable, "probeListe2");
-        thread.start();
+        //preload
+        ColorHealerModel._instance.getProbesPool().refresh();
     }
 
     public void unLock()
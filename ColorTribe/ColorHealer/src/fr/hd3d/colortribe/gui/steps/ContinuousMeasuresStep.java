@@ -35,8 +35,9 @@ import fr.hd3d.colortribe.color.ColorMeasure;
 import fr.hd3d.colortribe.color.EStandardIlluminants;
 import fr.hd3d.colortribe.color.EStandardRgbPrimaries;
 import fr.hd3d.colortribe.color.IRgbPrimary;
+import fr.hd3d.colortribe.color.difference.DeltaE;
+import fr.hd3d.colortribe.color.difference.Lab;
 import fr.hd3d.colortribe.color.type.Point2f;
-import fr.hd3d.colortribe.color.type.Point3f;
 import fr.hd3d.colortribe.core.ColorHealerModel;
 import fr.hd3d.colortribe.core.DisplayDevice;
 import fr.hd3d.colortribe.core.MeasuresSet;
@@ -45,6 +46,7 @@ import fr.hd3d.colortribe.core.probes.IProbe.EProbeType;
 import fr.hd3d.colortribe.core.target.ITarget;
 import fr.hd3d.colortribe.gui.CustomTabbedPane;
 import fr.hd3d.colortribe.gui.JHealerColors;
+import fr.hd3d.colortribe.gui.UiUpdateBus;
 import fr.hd3d.colortribe.gui.components.JCIE31PrimariesCanvas;
 import fr.hd3d.colortribe.gui.components.JCIE76PrimariesCanvas;
 import fr.hd3d.colortribe.gui.components.MagnifiedCanvas;
@@ -78,6 +80,8 @@ public class ContinuousMeasuresStep extends Step
     private JLabel _colorTemp;
     private JLabel _dcolorTemp;
     private JLabel _goodBad;
+    // Lab of the live CIEDE2000, only used on the EDT
+    private final float[] _measuredLab = new float[3];
     private JFileChooser fileChooser;
 
     private CustomTabbedPane _tabPane;
@@ -404,8 +408,8 @@ public class ContinuousMeasuresStep extends Step
                                 + " (" + _dyLab.getText() + ")" + " Y : " + _YLab.getText() + " (" + _dYLab.getText()
                                 + ")" + "<br>\n";
 
-                        int approxColorTemp = (int) EStandardIlluminants.getApproximateColorTemperature(new Point2f(
-                                Float.valueOf(_xLab.getText()),  Float.valueOf(_yLab.getText())));
+                        int approxColorTemp = (int) EStandardIlluminants.getApproximateColorTemperature(
+                                Float.valueOf(_xLab.getText()), Float.valueOf(_yLab.getText()));
 
                        
 
@@ -487,11 +491,6 @@ public class ContinuousMeasuresStep extends Step
         final Color color = new Color(Integer.valueOf(rTxt.getText()), Integer.valueOf(gTxt.getText()), Integer
                 .valueOf(bTxt.getText()));
         final ITarget target = model.getTarget();
-        final Point2f targetPoint = target.getColorTemp().getxyCoordinates();
-        final float colorDelta = target.getColorDelta();
-        final float lumDelta = target.getLumDelta();
-        final float targetLum = target.getMaxLum();
-        final int targetTemp = target.getColorTemp().getValue();
         final boolean isColorMonochrome = color.getRed() == color.getBlue() && color.getBlue() == color.getGreen();
         if (!isColorMonochrome)
         {
@@ -502,6 +501,13 @@ public class ContinuousMeasuresStep extends Step
             _dcolorTemp.setText("");
             _goodBad.setText("");
         }
+        final UiUpdateBus<MeasureSnapshot> updateBus = new UiUpdateBus<MeasureSnapshot>(
+                new UiUpdateBus.IRenderer<MeasureSnapshot>() {
+                    public void render(MeasureSnapshot snapshot)
+                    {
+                        showMeasure(snapshot, isColorMonochrome, target);
+                    }
+                });
         Thread thread;
         Runnable runnable = new Runnable() {
             public void run()
@@ -515,84 +521,8 @@ public class ContinuousMeasuresStep extends Step
 
                     if (!res)
                         return;
-                    // set measured values
                     ColorMeasure mes = measures.getMeasure(color);
-                    if (mes != null)
-                    {
-                        Point3f measuredPoint = mes.getValue();
-                        _magnifiedCanvas.setMeasuredPoint(measuredPoint._a, measuredPoint._b);
-                        _xLab.setText(String.valueOf(((int) (measuredPoint._a * 1000) / 1000f)));
-                        _yLab.setText(String.valueOf(((int) (measuredPoint._b * 1000) / 1000f)));
-                        _YLab.setText(String.valueOf(((int) (measuredPoint._c * 1000) / 1000f)));
-                        if (isColorMonochrome)
-                        {
-                            _magnifiedCanvas.setMeasuredPoint(measuredPoint._a, measuredPoint._b);
-                            float dx = measuredPoint._a - targetPoint._a;
-                            float dy = measuredPoint._b - targetPoint._b;
-                            float dY = measuredPoint._c - targetLum;
-                            _dxLab.setText("" + ((int) (dx * 1000)) / 1000f);
-                            _dyLab.setText("" + ((int) (dy * 1000)) / 1000f);
-                            _dYLab.setText("" + ((int) (dY * 1000)) / 1000f);
-                            dx = Math.abs(dx);
-                            dy = Math.abs(dy);
-                            dY = Math.abs(dY);
-                            if (dx < colorDelta)
-                                _dxLab.setForeground(Color.green);
-                            else
-                                _dxLab.setForeground(Color.red);
-
-                            if (dy < colorDelta)
-                                _dyLab.setForeground(Color.green);
-                            else
-                                _dyLab.setForeground(Color.red);
-
-                            if (dY < lumDelta)
-                                _dYLab.setForeground(Color.green);
-                            else
-                                _dYLab.setForeground(Color.red);
-
-                            int approxColorTemp = (int) EStandardIlluminants
-                                    .getApproximateColorTemperature(new Point2f(measuredPoint._a, measuredPoint._b));
-
-                            _colorTemp.setText("" + approxColorTemp);
-                            if ((dx < colorDelta) && (dy < colorDelta))
-                                _colorTemp.setForeground(Color.green);
-                            else
-                                _colorTemp.setForeground(Color.red);
-
-                            // calcul de la diff en Mired
-                            // delta = (approxColorTemp - targetTemp)
-                            // miredDelta = (1000000/approxColorTemp - 1000000/targetTemp)
-                            int miredDelta = 1000000 / approxColorTemp - 1000000 / targetTemp;
-                            _dcolorTemp.setText("" + miredDelta + " Md");
-                            miredDelta = Math.abs(miredDelta);
-                            if (miredDelta > target.getTCDelta())
-                                _dcolorTemp.setForeground(Color.red);
-                            else
-                                _dcolorTemp.setForeground(Color.green);
-
-                            if ((dx > colorDelta) || (dy > colorDelta) || (dY > lumDelta)
-                                    || (miredDelta > target.getTCDelta()))
-                            {
-                                _goodBad.setText("BAD");
-                                _goodBad.setForeground(Color.red);
-                                _magnifiedCanvas.setOK(false);
-                            }
-                            else
-                            {
-                                _goodBad.setText("GOOD");
-                                _goodBad.setForeground(Color.green);
-                                _magnifiedCanvas.setOK(true);
-
-                            }
-
-                        }
-
-                    }
-
-                    _white31Canvas.repaint();
-                    _white76Canvas.repaint();
-                    _magnifiedCanvas.repaint();
+                    updateBus.publish(mes != null ? new MeasureSnapshot(mes.getValue()) : MeasureSnapshot.NO_MEASURE);
                 }
                 while (_isMeasuring && !isMKCS200);
                 if (isMKCS200)
@@ -609,6 +539,103 @@ public class ContinuousMeasuresStep extends Step
         thread.start();
     }
 
+    /**
+     * Shows the latest measure, on the EDT.
+     */
+    private void showMeasure(MeasureSnapshot snapshot, boolean isColorMonochrome, ITarget target)
+    {
+        final Point2f targetPoint = target.getColorTemp().getxyCoordinates();
+        final float colorDelta = target.getColorDelta();
+        final float lumDelta = target.getLumDelta();
+        final float targetLum = target.getMaxLum();
+        final int targetTemp = target.getColorTemp().getValue();
+        if (snapshot != MeasureSnapshot.NO_MEASURE)
+        {
+            _magnifiedCanvas.setMeasuredPoint(snapshot._x, snapshot._y);
+            _xLab.setText(String.valueOf(((int) (snapshot._x * 1000) / 1000f)));
+            _yLab.setText(String.valueOf(((int) (snapshot._y * 1000) / 1000f)));
+            _YLab.setText(String.valueOf(((int) (snapshot._Y * 1000) / 1000f)));
+            if (isColorMonochrome)
+            {
+                _magnifiedCanvas.setMeasuredPoint(snapshot._x, snapshot._y);
+                float dx = snapshot._x - targetPoint._a;
+                float dy = snapshot._y - targetPoint._b;
+                float dY = snapshot._Y - targetLum;
+                _dxLab.setText("" + ((int) (dx * 1000)) / 1000f);
+                _dyLab.setText("" + ((int) (dy * 1000)) / 1000f);
+                _dYLab.setText("" + ((int) (dY * 1000)) / 1000f);
+                dx = Math.abs(dx);
+                dy = Math.abs(dy);
+                dY = Math.abs(dY);
+                if (dx < colorDelta)
+                    _dxLab.setForeground(Color.green);
+                else
+                    _dxLab.setForeground(Color.red);
+
+                if (dy < colorDelta)
+                    _dyLab.setForeground(Color.green);
+                else
+                    _dyLab.setForeground(Color.red);
+
+                if (dY < lumDelta)
+                    _dYLab.setForeground(Color.green);
+                else
+                    _dYLab.setForeground(Color.red);
+
+                int approxColorTemp = (int) EStandardIlluminants
+                        .getApproximateColorTemperature(snapshot._x, snapshot._y);
+
+                _colorTemp.setText("" + approxColorTemp);
+                if ((dx < colorDelta) && (dy < colorDelta))
+                    _colorTemp.setForeground(Color.green);
+                else
+                    _colorTemp.setForeground(Color.red);
+
+                // calcul de la diff en Mired
+                // delta = (approxColorTemp - targetTemp)
+                // miredDelta = (1000000/approxColorTemp - 1000000/targetTemp)
+                int miredDelta = 1000000 / approxColorTemp - 1000000 / targetTemp;
+                _dcolorTemp.setText("" + miredDelta + " Md");
+                miredDelta = Math.abs(miredDelta);
+                if (miredDelta > target.getTCDelta())
+                    _dcolorTemp.setForeground(Color.red);
+                else
+                    _dcolorTemp.setForeground(Color.green);
+
+                if ((dx > colorDelta) || (dy > colorDelta) || (dY > lumDelta)
+                        || (miredDelta > target.getTCDelta()))
+                {
+                    _goodBad.setText("BAD" + deltaE00Text(snapshot, targetPoint, targetLum));
+                    _goodBad.setForeground(Color.red);
+                    _magnifiedCanvas.setOK(false);
+                }
+                else
+                {
+                    _goodBad.setText("GOOD" + deltaE00Text(snapshot, targetPoint, targetLum));
+                    _goodBad.setForeground(Color.green);
+                    _magnifiedCanvas.setOK(true);
+
+                }
+
+            }
+
+        }
+
+        _white31Canvas.repaint();
+        _white76Canvas.repaint();
+        _magnifiedCanvas.repaint();
+    }
+
+    /**
+     * CIEDE2000 of the measure from the target, which is the Lab white : L 100, a 0, b 0.
+     */
+    private String deltaE00Text(MeasureSnapshot snapshot, Point2f targetPoint, float targetLum)
+    {
+        Lab.fromxyY(snapshot._x, snapshot._y, snapshot._Y, targetPoint._a, targetPoint._b, targetLum, _measuredLab);
+        float deltaE = DeltaE.ciede2000(100, 0, 0, _measuredLab[0], _measuredLab[1], _measuredLab[2]);
+        return " (dE00 " + ((int) (deltaE * 10)) / 10f + ")";
+    }
+
     private void measure()
     {
 
@@ -57,6 +57,7 @@ public class DisplayStep extends Step
     private JTextField _venueTex;
     private JTextField _bulbTextField;
     private JTextField _calibFormatTextField;
+    private JComboBox _lutBitsCombo;
     private static List<String> _dependantSteps = new ArrayList<String>();
     static
     {
@@ -80,15 +81,8 @@ public class DisplayStep extends Step
 
         {
 
-            Runnable runnable = new Runnable() {
-                public void run()
-                {
-                    // preload
-                    ColorHealerModel._instance.getProbesPool().getRefreshedProbesList();
-                }
-            };
-            Thread thread = new Thread(runnable, "probeListe2");
-            thread.start();
+            // preload
+            ColorHealerModel._instance.getProbesPool().refresh();
 
             ColorHealerModel model = ColorHealerModel._instance;
             DisplayDevice disp = model.getDisplayDevice();
@@ -244,12 +238,21 @@ public class DisplayStep extends Step
                 textPan.add(combox);
             }
 
+            // RAMDAC depth, not reported by ColorKeeper
+            JLabel lutBitsLab = new JLabel("LUT depth (bits) : ");
+            _lutBitsCombo = new JComboBox();
+            for (int bits = 8; bits <= 16; bits += 2)
+                _lutBitsCombo.addItem(Integer.valueOf(bits));
+            _lutBitsCombo.setSelectedItem(Integer.valueOf(disp.getLutBits()));
+            textPan.add(lutBitsLab);
+            textPan.add(_lutBitsCombo);
+
             textPan.add(bulbLab);
             textPan.add(_bulbTextField);
             textPan.add(calibLab);
             textPan.add(_calibFormatTextField);
             // Lay out the panel.
-            SpringUtilities.makeCompactGrid(textPan, 7, 2, // rows, cols
+            SpringUtilities.makeCompactGrid(textPan, 8, 2, // rows, cols
                     2, 2, // initialX, initialY
                     5, 5);// xPad, yPad
 
@@ -323,6 +326,7 @@ public class DisplayStep extends Step
         ColorHealerModel model = ColorHealerModel._instance;
         DisplayDevice disp = model.getDisplayDevice();
         disp.setType(_selectedType);
+        disp.setLutBits(((Integer) _lutBitsCombo.getSelectedItem()).intValue());
         if (_uidTex.isEditable())
             disp.setUid(_uidTex.getText());
         if (_brandTex.isEditable())
@@ -28,6 +28,7 @@ import fr.hd3d.colortribe.color.type.Point3f;
 import fr.hd3d.colortribe.core.ColorHealerModel;
 import fr.hd3d.colortribe.core.DisplayDevice;
 import fr.hd3d.colortribe.core.DisplayDevice.EDisplayDeviceType;
+import fr.hd3d.colortribe.core.correction.Lut3DCorrection;
 import fr.hd3d.colortribe.core.target.ITarget;
 import fr.hd3d.colortribe.gui.CustomTabbedPane;
 
@@ -139,6 +140,7 @@ public class FinalisationStep extends Step
                                     + " ; " + " x=" + point._a + ", y=" + point._b + ", Y=" + point._c + "]\n");
                         }
                         sortie.close();
+                        saveLut3D(file);
                     }
                     catch (IOException e1)
                     {
@@ -234,4 +236,25 @@ public class FinalisationStep extends Step
             _status = StepStatus.DISABLE;
         }
     }
+
+    /**
+     * Saves the 3D LUT correction of the current measures set next to the summary, as .cube and binary files.
+     */
+    private void saveLut3D(File summary) throws IOException
+    {
+        Lut3DCorrection lut = new Lut3DCorrection(ColorHealerModel._instance.getCurrentMeasuresSetIndex(),
+                Lut3DCorrection.DEFAULT_SIZE);
+        try
+        {
+            lut.computeColorCorrection();
+        }
+        catch (RuntimeException e)
+        {
+            // missing ramps, singular primaries matrix...
+            System.err.println("No 3D LUT saved : " + e);
+            return;
+        }
+        lut.saveCube(new File(summary.getPath() + ".cube"));
+        lut.saveBinary(new File(summary.getPath() + ".lut3d"));
+    }
 }
@@ -0,0 +1,29 @@
+package fr.hd3d.colortribe.gui.steps;
+
+import fr.hd3d.colortribe.color.type.Point3f;
+
+
+/**
+ * Immutable copy of a measured x,y,Y value, handed from the measurement threads to the UI.
+ */
+final class MeasureSnapshot
+{
+    /** Nothing measured yet, only the canvases are repainted. */
+    static final MeasureSnapshot NO_MEASURE = new MeasureSnapshot(0, 0, 0);
+
+    final float _x;
+    final float _y;
+    final float _Y;
+
+    MeasureSnapshot(float x, float y, float Y)
+    {
+        _x = x;
+        _y = y;
+        _Y = Y;
+    }
+
+    MeasureSnapshot(Point3f xyY)
+    {
+        this(xyY._a, xyY._b, xyY._c);
+    }
+}
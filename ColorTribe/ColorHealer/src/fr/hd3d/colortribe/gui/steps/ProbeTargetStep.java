@@ -17,6 +17,7 @@ import java.awt.event.MouseEvent;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
+import java.util.function.Consumer;
 
 import javax.swing.BorderFactory;
 import javax.swing.BoxLayout;
@@ -32,6 +33,7 @@ import javax.swing.JTextArea;
 import javax.swing.JTextField;
 import javax.swing.ListSelectionModel;
 import javax.swing.SpringLayout;
+import javax.swing.SwingUtilities;
 import javax.swing.border.TitledBorder;
 import javax.swing.event.ListSelectionEvent;
 import javax.swing.event.ListSelectionListener;
@@ -47,6 +49,7 @@ import fr.hd3d.colortribe.core.ColorHealerModel;
 import fr.hd3d.colortribe.core.probes.AbstractProbe;
 import fr.hd3d.colortribe.core.probes.CS200Probe;
 import fr.hd3d.colortribe.core.probes.IProbe.EProbeType;
+import fr.hd3d.colortribe.core.probes.ProbesPool;
 import fr.hd3d.colortribe.core.target.ITarget;
 import fr.hd3d.colortribe.core.target.SimpleQuatuorTarget;
 import fr.hd3d.colortribe.gui.CustomTabbedPane;
@@ -58,7 +61,7 @@ public class ProbeTargetStep extends Step {
 	/**
      * 
      */
-
+
 	public static String NAME = "Probe and Target";
 	private static final long serialVersionUID = 7306873765422762571L;
 
@@ -102,29 +105,61 @@ public class ProbeTargetStep extends Step {
 	}
 
 	private void sniffProbes() {
-		Runnable runnable = new Runnable() {
+		// the list is only updated on the event dispatch thread
+		SwingUtilities.invokeLater(new Runnable() {
 			public void run() {
 				_refreshLab.setText("in progress...");
 				_listScrollPane.setEnabled(false);
 				_listModel.clear();
-				Set<EProbeType> probes = ColorHealerModel._instance
-						.getProbesPool().getProbesList();
-				for (EProbeType probeType : probes) {
-					_listModel.addElement(probeType);
-				}
-				// _refreshBut.setVisible(true);
-				int probesCount = probes.size();
-				if (probesCount < 2)
-					_refreshLab.setText(probesCount + " probe found.");
-				else
-					_refreshLab.setText(probesCount + " probes found.");
-				_listScrollPane.setEnabled(true);
+			}
+		});
+		Runnable runnable = new Runnable() {
+			public void run() {
+				ProbesPool pool = ColorHealerModel._instance.getProbesPool();
+				final Set<EProbeType> known = pool.getProbesList();
+				SwingUtilities.invokeLater(new Runnable() {
+					public void run() {
+						showProbes(known);
+						// _refreshBut.setVisible(true);
+						_listScrollPane.setEnabled(true);
+					}
+				});
+				// probes found once the last known ones answered
+				pool.getDiscovery().thenAccept(new Consumer<Set<EProbeType>>() {
+					public void accept(final Set<EProbeType> probes) {
+						SwingUtilities.invokeLater(new Runnable() {
+							public void run() {
+								showProbes(probes);
+							}
+						});
+					}
+				});
 			}
 		};
 		Thread thread = new Thread(runnable, "probeListe");
 		thread.start();
 	}
 
+	/**
+	 * Updates the probes list, keeping the selection of the probes still
+	 * there.
+	 */
+	private void showProbes(Set<EProbeType> probes) {
+		for (int i = _listModel.size() - 1; i >= 0; i--) {
+			if (!probes.contains(_listModel.get(i)))
+				_listModel.remove(i);
+		}
+		for (EProbeType probeType : probes) {
+			if (!_listModel.contains(probeType))
+				_listModel.addElement(probeType);
+		}
+		int probesCount = probes.size();
+		if (probesCount < 2)
+			_refreshLab.setText(probesCount + " probe found.");
+		else
+			_refreshLab.setText(probesCount + " probes found.");
+	}
+
 	public void init() {
 		if (!_isInit) {
 			JPanel container = new JPanel();
@@ -51,6 +51,7 @@ public class ValidationStep extends Step
     private JLabel deltacalculatedGammaLab;
     private JLabel calibratedGammaLab;
     private JLabel deltaGammaLab;
+    private JLabel deltaELab;
     static
     {}
 
@@ -123,6 +124,7 @@ public class ValidationStep extends Step
         deltacalculatedGammaLab = new JLabel("Deltas : ");
         calibratedGammaLab = new JLabel("Calibrated gamma : ");
         deltaGammaLab = new JLabel("Deltas : ");
+        deltaELab = new JLabel("CIEDE2000 : ");
 
         JPanel deltasPanel = new JPanel();
         tiledBorder.setTitleColor(JHealerColors.TEXT_COLOR);
@@ -144,6 +146,8 @@ public class ValidationStep extends Step
         deltaCon.gridy++;
         deltasPanel.add(deltaGammaLab, deltaCon);
         deltaCon.gridy++;
+        deltasPanel.add(deltaELab, deltaCon);
+        deltaCon.gridy++;
         deltasPanel.add(computeDeltaButton, deltaCon);
         // /
         // ////////layout
@@ -215,6 +219,21 @@ public class ValidationStep extends Step
             calibratedGammaLab.setText("Calibrated gamma : ");
             deltaGammaLab.setText("Deltas : ");
         }
+        float[] deltaE = correction.getValidationDeltaE();
+        if (deltaE != null && deltaE.length > 0)
+        {
+            float sum = 0, max = 0;
+            for (float value : deltaE)
+            {
+                sum += value;
+                max = Math.max(max, value);
+            }
+            float mean = sum / deltaE.length;
+            deltaELab.setText("CIEDE2000 : mean " + ((int) (mean * 100)) / 100f + ", max " + ((int) (max * 100))
+                    / 100f + " (" + deltaE.length + " patches)");
+        }
+        else
+            deltaELab.setText("CIEDE2000 : ");
     }
 
     public void init()
@@ -35,6 +35,8 @@ import fr.hd3d.colortribe.color.ColorMeasure;
 import fr.hd3d.colortribe.color.EStandardIlluminants;
 import fr.hd3d.colortribe.color.EStandardRgbPrimaries;
 import fr.hd3d.colortribe.color.IRgbPrimary;
+import fr.hd3d.colortribe.color.difference.DeltaE;
+import fr.hd3d.colortribe.color.difference.Lab;
 import fr.hd3d.colortribe.color.type.Point2f;
 import fr.hd3d.colortribe.color.type.Point3f;
 import fr.hd3d.colortribe.core.ColorHealerModel;
@@ -46,6 +48,7 @@ import fr.hd3d.colortribe.core.probes.IProbe.EProbeType;
 import fr.hd3d.colortribe.core.target.ITarget;
 import fr.hd3d.colortribe.gui.CustomTabbedPane;
 import fr.hd3d.colortribe.gui.JHealerColors;
+import fr.hd3d.colortribe.gui.UiUpdateBus;
 import fr.hd3d.colortribe.gui.components.GaugeCanvas;
 import fr.hd3d.colortribe.gui.components.JCIE31PrimariesCanvas;
 import fr.hd3d.colortribe.gui.components.JCIE76PrimariesCanvas;
@@ -71,6 +74,18 @@ public class WhiteStep extends Step
 	private JButton _whiteStartBut;
 	private JButton _grayStartBut;
 	private boolean _isMeasuring = false;
+	private final UiUpdateBus<MeasureSnapshot> _whiteBus = new UiUpdateBus<MeasureSnapshot>(
+			new UiUpdateBus.IRenderer<MeasureSnapshot>() {
+				public void render(MeasureSnapshot snapshot) {
+					showWhite(snapshot);
+				}
+			});
+	private final UiUpdateBus<MeasureSnapshot> _grayBus = new UiUpdateBus<MeasureSnapshot>(
+			new UiUpdateBus.IRenderer<MeasureSnapshot>() {
+				public void render(MeasureSnapshot snapshot) {
+					showGray(snapshot);
+				}
+			});
 	private boolean _isInit = false;
 	private JComboBox primariesCombo;
 	private JComboBox primariesCombo2;
@@ -110,6 +125,9 @@ public class WhiteStep extends Step
 
 	private int whitePaneIndex = 0;
 	private int grayPaneIndex = 1;
+	// Lab of the live CIEDE2000, only used on the EDT
+	private final float[] _measuredLab = new float[3];
+	private final float[] _targetLab = new float[3];
 
 	private StepStatus _oldStatus = StepStatus.NOT_COMPLETE;
 
@@ -703,25 +721,33 @@ public class WhiteStep extends Step
 
 	private void oneWhite() {
 		ColorHealerModel model = ColorHealerModel._instance;
-		ITarget target = model.getTarget();
 		final MeasuresSet measures = model.getCurrentMeasuresSet();
 		boolean res = measures.mesureThisColor(model.getCurrentMeasuresSet(),
 				Color.white, "white measure");
+		if (!res)
+			return;
+		ColorMeasure white = measures.getMeasure(Color.white);
+		_whiteBus.publish(white != null ? new MeasureSnapshot(white.getValue())
+				: MeasureSnapshot.NO_MEASURE);
+	}
+
+	/**
+	 * Shows the latest white measure, on the EDT.
+	 */
+	private void showWhite(MeasureSnapshot snapshot) {
+		ITarget target = ColorHealerModel._instance.getTarget();
 		Point2f targetPoint = target.getColorTemp().getxyCoordinates();
 		float colorDelta = target.getColorDelta();
 		float lumDelta = target.getLumDelta();
 		float targetLum = target.getMaxLum();
 		int targetTemp = target.getColorTemp().getValue();
-		if (!res)
-			return;
 		// set measured values
-		if (measures.getMeasure(Color.white) != null) {
-			Point3f measuredPoint = measures.getMeasure(Color.white).getValue();
-			_magnifiedCanvas.setMeasuredPoint(measuredPoint._a,
-					measuredPoint._b);
-			float dx = measuredPoint._a - targetPoint._a;
-			float dy = measuredPoint._b - targetPoint._b;
-			float dY = measuredPoint._c - targetLum;
+		if (snapshot != MeasureSnapshot.NO_MEASURE) {
+			_magnifiedCanvas.setMeasuredPoint(snapshot._x,
+					snapshot._y);
+			float dx = snapshot._x - targetPoint._a;
+			float dy = snapshot._y - targetPoint._b;
+			float dY = snapshot._Y - targetLum;
 			_dxLab.setText("" + ((int) (dx * 1000)) / 1000f);
 			_dyLab.setText("" + ((int) (dy * 1000)) / 1000f);
 			_dYLab.setText("" + ((int) (dY * 1000)) / 1000f);
@@ -743,15 +769,15 @@ public class WhiteStep extends Step
 			else
 				_dYLab.setForeground(Color.red);
 			_xLab.setText(String
-					.valueOf(((int) (measuredPoint._a * 1000) / 1000f)));
+					.valueOf(((int) (snapshot._x * 1000) / 1000f)));
 			_yLab.setText(String
-					.valueOf(((int) (measuredPoint._b * 1000) / 1000f)));
+					.valueOf(((int) (snapshot._y * 1000) / 1000f)));
 			_YLab.setText(String
-					.valueOf(((int) (measuredPoint._c * 1000) / 1000f)));
+					.valueOf(((int) (snapshot._Y * 1000) / 1000f)));
 
 			int approxColorTemp = (int) EStandardIlluminants
-					.getApproximateColorTemperature(new Point2f(
-							measuredPoint._a, measuredPoint._b));
+					.getApproximateColorTemperature(
+							snapshot._x, snapshot._y);
 
 			_colorTemp.setText("" + approxColorTemp);
 			if ((dx < colorDelta) && (dy < colorDelta))
@@ -772,17 +798,17 @@ public class WhiteStep extends Step
 
 			if ((dx > colorDelta) || (dy > colorDelta) || (dY > lumDelta)
 					|| (miredDelta > target.getTCDelta())) {
-				_goodBad.setText("BAD");
+				_goodBad.setText("BAD" + deltaE00Text(snapshot, target, targetLum));
 				_goodBad.setForeground(Color.red);
 				_magnifiedCanvas.setOK(false);
 			} else {
-				_goodBad.setText("GOOD");
+				_goodBad.setText("GOOD" + deltaE00Text(snapshot, target, targetLum));
 				_goodBad.setForeground(Color.green);
 				_magnifiedCanvas.setOK(true);
 
 			}
 
-			_whiteGaugeCanvas.setMeasure(measuredPoint._c);
+			_whiteGaugeCanvas.setMeasure(snapshot._Y);
 
 		}
 
@@ -849,12 +875,6 @@ public class WhiteStep extends Step
 		Runnable runnable = new Runnable() {
 			public void run() {
 				lockDependantStep("Start measure");
-				ITarget target = ColorHealerModel._instance.getTarget();
-				Point2f targetPoint = target.getColorTemp().getxyCoordinates();
-				float colorDelta = target.getColorDelta();
-				float lumDelta = target.getLumDelta();
-				float targetLum = target.getGrayGammaTarget();
-				int targetTemp = target.getColorTemp().getValue();
 				boolean isMKCS200 = ColorHealerModel._instance.getProbe()
 						.getEProbeType() == EProbeType.MK_CS200;
 				ColorHealerModel model = ColorHealerModel._instance;
@@ -865,73 +885,9 @@ public class WhiteStep extends Step
 
 					if (!res)
 						return;
-					// set measured values
-					if (measures.getMeasure(ITarget.GAMMA_GRAY) != null) {
-						Point3f measuredPoint = measures.getMeasure(
-								ITarget.GAMMA_GRAY).getValue();
-						_magnifiedCanvas2.setMeasuredPoint(measuredPoint._a,
-								measuredPoint._b);
-						float dx2 = ((int) ((measuredPoint._a - targetPoint._a) * 1000)) / 1000f;
-						float dy2 = ((int) ((measuredPoint._b - targetPoint._b) * 1000)) / 1000f;
-						float dY2 = ((int) ((measuredPoint._c - targetLum) * 1000)) / 1000f;
-						_dxLab2.setText("" + dx2);
-						_dyLab2.setText("" + dy2);
-						_dYLab2.setText("" + dY2);
-						dx2 = Math.abs(dx2);
-						dy2 = Math.abs(dy2);
-						dY2 = Math.abs(dY2);
-
-						if (dx2 < colorDelta)
-							_dxLab2.setForeground(Color.green);
-						else
-							_dxLab2.setForeground(Color.red);
-
-						if (dy2 < colorDelta)
-							_dyLab2.setForeground(Color.green);
-						else
-							_dyLab2.setForeground(Color.red);
-
-						if (dY2 < lumDelta)
-							_dYLab2.setForeground(Color.green);
-						else
-							_dYLab2.setForeground(Color.red);
-						_xLab2.setText(String
-								.valueOf(((int) (measuredPoint._a * 1000) / 1000f)));
-						_yLab2.setText(String
-								.valueOf(((int) (measuredPoint._b * 1000) / 1000f)));
-						_YLab2.setText(String
-								.valueOf(((int) (measuredPoint._c * 1000) / 1000f)));
-						_grayGaugeCanvas.setMeasure(measuredPoint._c);
-
-						int approxColorTemp = (int) EStandardIlluminants
-								.getApproximateColorTemperature(new Point2f(
-										measuredPoint._a, measuredPoint._b));
-
-						_colorTemp2.setText("" + approxColorTemp);
-						if ((dx2 < colorDelta) && (dy2 < colorDelta))
-							_dcolorTemp2.setForeground(Color.green);
-						else
-							_dcolorTemp2.setForeground(Color.red);
-
-						_dcolorTemp2.setText(""
-								+ (approxColorTemp - targetTemp));
-
-						if ((dx2 > colorDelta) || (dy2 > colorDelta)
-								|| (dY2 > lumDelta)) {
-							_goodBad2.setText("BAD");
-							_goodBad2.setForeground(Color.red);
-							_magnifiedCanvas2.setOK(false);
-						} else {
-							_goodBad2.setText("GOOD");
-							_goodBad2.setForeground(Color.green);
-							_magnifiedCanvas2.setOK(true);
-
-						}
-					}
-					_gray31Canvas.repaint();
-					_gray76Canvas.repaint();
-					_magnifiedCanvas2.repaint();
-					_grayGaugeCanvas.repaint();
+					ColorMeasure gray = measures.getMeasure(ITarget.GAMMA_GRAY);
+					_grayBus.publish(gray != null ? new MeasureSnapshot(gray
+							.getValue()) : MeasureSnapshot.NO_MEASURE);
 				} while (_isMeasuring && !isMKCS200);
 				if (isMKCS200) {
 					_measurePrimChec2.setSelected(false);
@@ -949,6 +905,100 @@ public class WhiteStep extends Step
 		thread.start();
 	}
 
+	/**
+	 * Shows the latest gray measure, on the EDT.
+	 */
+	private void showGray(MeasureSnapshot snapshot) {
+		ITarget target = ColorHealerModel._instance.getTarget();
+		Point2f targetPoint = target.getColorTemp().getxyCoordinates();
+		float colorDelta = target.getColorDelta();
+		float lumDelta = target.getLumDelta();
+		float targetLum = target.getGrayGammaTarget();
+		int targetTemp = target.getColorTemp().getValue();
+		if (snapshot != MeasureSnapshot.NO_MEASURE) {
+			_magnifiedCanvas2.setMeasuredPoint(snapshot._x,
+					snapshot._y);
+			float dx2 = ((int) ((snapshot._x - targetPoint._a) * 1000)) / 1000f;
+			float dy2 = ((int) ((snapshot._y - targetPoint._b) * 1000)) / 1000f;
+			float dY2 = ((int) ((snapshot._Y - targetLum) * 1000)) / 1000f;
+			_dxLab2.setText("" + dx2);
+			_dyLab2.setText("" + dy2);
+			_dYLab2.setText("" + dY2);
+			dx2 = Math.abs(dx2);
+			dy2 = Math.abs(dy2);
+			dY2 = Math.abs(dY2);
+
+			if (dx2 < colorDelta)
+				_dxLab2.setForeground(Color.green);
+			else
+				_dxLab2.setForeground(Color.red);
+
+			if (dy2 < colorDelta)
+				_dyLab2.setForeground(Color.green);
+			else
+				_dyLab2.setForeground(Color.red);
+
+			if (dY2 < lumDelta)
+				_dYLab2.setForeground(Color.green);
+			else
+				_dYLab2.setForeground(Color.red);
+			_xLab2.setText(String
+					.valueOf(((int) (snapshot._x * 1000) / 1000f)));
+			_yLab2.setText(String
+					.valueOf(((int) (snapshot._y * 1000) / 1000f)));
+			_YLab2.setText(String
+					.valueOf(((int) (snapshot._Y * 1000) / 1000f)));
+			_grayGaugeCanvas.setMeasure(snapshot._Y);
+
+			int approxColorTemp = (int) EStandardIlluminants
+					.getApproximateColorTemperature(
+							snapshot._x, snapshot._y);
+
+			_colorTemp2.setText("" + approxColorTemp);
+			if ((dx2 < colorDelta) && (dy2 < colorDelta))
+				_dcolorTemp2.setForeground(Color.green);
+			else
+				_dcolorTemp2.setForeground(Color.red);
+
+			_dcolorTemp2.setText(""
+					+ (approxColorTemp - targetTemp));
+
+			if ((dx2 > colorDelta) || (dy2 > colorDelta)
+					|| (dY2 > lumDelta)) {
+				_goodBad2.setText("BAD" + deltaE00Text(snapshot, target, targetLum));
+				_goodBad2.setForeground(Color.red);
+				_magnifiedCanvas2.setOK(false);
+			} else {
+				_goodBad2.setText("GOOD" + deltaE00Text(snapshot, target, targetLum));
+				_goodBad2.setForeground(Color.green);
+				_magnifiedCanvas2.setOK(true);
+
+			}
+		}
+		_gray31Canvas.repaint();
+		_gray76Canvas.repaint();
+		_magnifiedCanvas2.repaint();
+		_grayGaugeCanvas.repaint();
+	}
+
+	/**
+	 * CIEDE2000 of the measure from the target white point at targetLum, the
+	 * Lab white being the target white at max luminance.
+	 */
+	private String deltaE00Text(MeasureSnapshot snapshot, ITarget target,
+			float targetLum) {
+		Point2f white = target.getColorTemp().getxyCoordinates();
+		float whiteLum = target.getMaxLum();
+		Lab.fromxyY(white._a, white._b, targetLum, white._a, white._b,
+				whiteLum, _targetLab);
+		Lab.fromxyY(snapshot._x, snapshot._y, snapshot._Y, white._a,
+				white._b, whiteLum, _measuredLab);
+		float deltaE = DeltaE.ciede2000(_targetLab[0], _targetLab[1],
+				_targetLab[2], _measuredLab[0], _measuredLab[1],
+				_measuredLab[2]);
+		return " (dE00 " + ((int) (deltaE * 10)) / 10f + ")";
+	}
+
 	public boolean canUnLockDependantStep() {
 		return _status == StepStatus.OK;
 	}
@@ -1063,8 +1113,8 @@ public class WhiteStep extends Step
 		boolean mustRepain = true;
 
 		int approxColorTemp = (int) EStandardIlluminants
-				.getApproximateColorTemperature(new Point2f(measuredPoint._a,
-						measuredPoint._b));
+				.getApproximateColorTemperature(measuredPoint._a,
+						measuredPoint._b);
 		int targetTemp = target.getColorTemp().getValue();
 		int miredDelta = 1000000 / approxColorTemp - 1000000 / targetTemp;
 		miredDelta = Math.abs(miredDelta);
@@ -1098,5 +1148,5 @@ public class WhiteStep extends Step
 		_oldStatus = _status;
 		_status = StepStatus.DISABLE;
 	}
-
+
 }
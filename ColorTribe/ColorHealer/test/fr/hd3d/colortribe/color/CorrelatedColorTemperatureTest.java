@@ -0,0 +1,62 @@
+package fr.hd3d.colortribe.color;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+
+public class CorrelatedColorTemperatureTest
+{
+    private static void check(EStandardIlluminants illuminant, float cctTolerance, float duvTolerance)
+    {
+        float[] cctAndDuv = new float[2];
+        CorrelatedColorTemperature.compute(illuminant.getxyCoordinates()._a, illuminant.getxyCoordinates()._b,
+                cctAndDuv);
+        assertEquals(illuminant + " CCT", illuminant.getValue(), cctAndDuv[CorrelatedColorTemperature.CCT],
+                cctTolerance);
+        assertEquals(illuminant + " Duv", 0, cctAndDuv[CorrelatedColorTemperature.DUV], duvTolerance);
+    }
+
+    private static float cctOfPlanckian(double temperature)
+    {
+        double[] uv = new double[2];
+        CorrelatedColorTemperature.planckianUV(temperature, uv);
+        // CIE 1960 u,v to x,y
+        double denominator = 2 * uv[0] - 8 * uv[1] + 4;
+        return CorrelatedColorTemperature.getTemperature((float) (3 * uv[0] / denominator),
+                (float) (2 * uv[1] / denominator));
+    }
+
+    /**
+     * The exact black body chromaticity gives back its temperature within 1 K, up to the last table entries.
+     */
+    @Test
+    public void planckianRoundTrip()
+    {
+        for (double temperature = 1000; temperature <= 40000; temperature *= 1.0137)
+            assertEquals(temperature, cctOfPlanckian(temperature), 1);
+        assertEquals(39988.3, cctOfPlanckian(39988.3), 1);
+        assertEquals(40000, cctOfPlanckian(40000), 1);
+        assertEquals(1000, cctOfPlanckian(1000), 1);
+    }
+
+    /**
+     * A is a Planckian radiator : its Duv is 0 and its CCT 2856 K, within the rounding of its 5 digit chromaticity.
+     */
+    @Test
+    public void illuminantA()
+    {
+        check(EStandardIlluminants.A, 0.5f, 1e-4f);
+    }
+
+    /**
+     * Daylight illuminants are near the locus, at their nominal CCT within a few kelvins.
+     */
+    @Test
+    public void daylightIlluminants()
+    {
+        check(EStandardIlluminants.D50, 2, 0.01f);
+        check(EStandardIlluminants.D55, 2, 0.01f);
+        check(EStandardIlluminants.D65, 2, 0.01f);
+    }
+}
@@ -0,0 +1,80 @@
+package fr.hd3d.colortribe.core.probes;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import fr.hd3d.colortribe.color.type.Point3f;
+
+
+public class SettlingDetectorTest
+{
+    // same settings as ColorMeasureManager
+    private final SettlingDetector _detector = new SettlingDetector(2, 4, 0.01f, 0.001f, 10000);
+
+    /**
+     * @return reads until the display is stable, or -1.
+     */
+    private int readsToSettle(float[] luminances, float[] settledLum)
+    {
+        List<Point3f> readings = new ArrayList<Point3f>();
+        for (int i = 0; i < luminances.length; i++)
+        {
+            if (_detector.addReading(readings, new Point3f(0.3127f, 0.329f, luminances[i])))
+            {
+                settledLum[0] = luminances[i];
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Noise free rise from 10 to 100 cd/m2, with a time constant in reads.
+     */
+    private static float[] exponentialRamp(float timeConstant)
+    {
+        float[] luminances = new float[1000];
+        for (int i = 0; i < luminances.length; i++)
+            luminances[i] = 100 - 90 * (float) Math.exp(-(i + 1) / timeConstant);
+        return luminances;
+    }
+
+    @Test
+    public void slowRampIsNotTakenForNoise()
+    {
+        float[] settledLum = new float[1];
+        assertTrue(readsToSettle(exponentialRamp(5), settledLum) > 0);
+        assertTrue("settled at " + settledLum[0], settledLum[0] > 98);
+        assertTrue(readsToSettle(exponentialRamp(20), settledLum) > 0);
+        assertTrue("settled at " + settledLum[0], settledLum[0] > 93);
+    }
+
+    @Test
+    public void stablePatchSettlesWithinTheWindow()
+    {
+        Random random = new Random(1);
+        float[] settledLum = new float[1];
+        for (int run = 0; run < 20; run++)
+        {
+            float[] luminances = new float[4];
+            for (int i = 0; i < luminances.length; i++)
+                luminances[i] = 50 * (1 + 0.002f * (float) random.nextGaussian());
+            int reads = readsToSettle(luminances, settledLum);
+            assertTrue("run " + run + " not settled", reads > 0);
+        }
+    }
+
+    @Test
+    public void stepIsNotStable()
+    {
+        List<Point3f> readings = new ArrayList<Point3f>();
+        assertFalse(_detector.addReading(readings, new Point3f(0.3127f, 0.329f, 10)));
+        assertFalse(_detector.addReading(readings, new Point3f(0.3127f, 0.329f, 100)));
+    }
+}
@@ -22,6 +22,8 @@ CKSocketClient::CKSocketClient() :
 	_tcpSocket = new QTcpSocket(this);
 	_blockSize = 0;
 	_currentScreen = 110;
+	_pendingLutBytes = 0;
+	_lutScreen = 0;
 	connect(_tcpSocket, SIGNAL(error(QAbstractSocket::SocketError)), this,
 			SLOT(displayError(QAbstractSocket::SocketError)));
 	connect(_tcpSocket, SIGNAL(readyRead()), this, SLOT(readSocket()));
@@ -73,6 +75,9 @@ void CKSocketClient::playMessage(const QString &message) {
 			QString sendMessage = "Error";
 			writeSocket(sendMessage);
 		}
+	} else if (message.compare(QString("GET_CAPABILITIES")) == 0) {
+		QString sendMessage("CAPABILITIES LUT_BIN\n");
+		writeSocket(sendMessage);
 	} else if (message.contains(QString("DISPLAY_LUM_PATT")) == true) {
 		QString m = message;
 		m.remove(QString("DISPLAY_LUM_PATT "));
@@ -153,6 +158,15 @@ void CKSocketClient::playMessage(const QString &message) {
 		ColorKeeperModel::Instance().setCalibSizeForScreen(screen, size);
 		QString sendMessage("SET_LUT_SIZE_OK\n");
 		writeSocket(sendMessage);
+	} else if (message.contains(QString("SET_LUT_BIN")) == true) {
+		// SET_LUT_BIN <screen> <size>, followed by size little-endian
+		// unsigned short r, g, b triplets
+		QStringList list = message.split(QChar(' '));
+		QChar sc = list[1][0];
+		_lutScreen = sc.digitValue();
+		unsigned int size = list[2].toUInt();
+		ColorKeeperModel::Instance().setCalibSizeForScreen(_lutScreen, size);
+		_pendingLutBytes = size * 3 * 2;
 	} else if (message.contains(QString("VALUE")) == true) {
 		QChar sc = message[6];
 		int screen = sc.digitValue();
@@ -204,11 +218,36 @@ void CKSocketClient::playMessage(const QString &message) {
 }
 
 void CKSocketClient::readSocket() {
-	while (_tcpSocket->canReadLine()) {
-		QString ligne = _tcpSocket->readLine();
-		ligne.truncate(ligne.length() - 1);
-		playMessage(ligne);
+	while (true) {
+		if (_pendingLutBytes > 0) {
+			if (_tcpSocket->bytesAvailable() < _pendingLutBytes)
+				return;
+			readBinaryLut();
+		} else if (_tcpSocket->canReadLine()) {
+			QString ligne = _tcpSocket->readLine();
+			ligne.truncate(ligne.length() - 1);
+			playMessage(ligne);
+		} else
+			return;
+	}
+}
+
+void CKSocketClient::readBinaryLut() {
+	QByteArray payload = _tcpSocket->read(_pendingLutBytes);
+	_pendingLutBytes = 0;
+	const unsigned char *data = (const unsigned char *) payload.constData();
+	int entries = payload.size() / 6;
+	for (int i = 0; i < entries; i++) {
+		const unsigned char *entry = data + i * 6;
+		unsigned short red = entry[0] | (entry[1] << 8);
+		unsigned short green = entry[2] | (entry[3] << 8);
+		unsigned short blue = entry[4] | (entry[5] << 8);
+		ColorKeeperModel::Instance().addCalibValueForScreen(_lutScreen, red,
+				green, blue);
 	}
+	ColorKeeperModel::Instance().setCalibDoneForScreen(_lutScreen);
+	QString sendMessage("SET_LUT_BIN_OK\n");
+	writeSocket(sendMessage);
 }
 
 void CKSocketClient::displayError(QAbstractSocket::SocketError socketError) {
@@ -30,6 +30,11 @@ private:
 	QString _serverAddress;
 	quint16 _blockSize;
 	unsigned int _currentScreen;
+	// binary LUT transfer in progress : bytes still expected and target screen
+	qint64 _pendingLutBytes;
+	int _lutScreen;
+
+	void readBinaryLut();
 
 private slots:
 	void readSocket();